@@ -2,8 +2,10 @@ package com.example.real_time_chat_app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RealTimeChatAppApplication {
 
 	public static void main(String[] args) {
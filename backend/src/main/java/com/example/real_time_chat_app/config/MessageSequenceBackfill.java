@@ -0,0 +1,94 @@
+package com.example.real_time_chat_app.config;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.Message;
+
+/**
+ * Gives sequence numbers to messages saved before messages had them, so history
+ * can be paged by sequence. These messages are older than every numbered message
+ * of their room, so they count down from below the room's lowest number, newest
+ * first. New messages are numbered from one, so the two never collide. Can be
+ * turned off once every message has a sequence number.
+ */
+@Component
+@ConditionalOnProperty(name = "messages.sequence.backfill.enabled", havingValue = "true")
+public class MessageSequenceBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageSequenceBackfill.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> roomIds = mongoTemplate.findDistinct(new Query(Criteria.where("sequence").exists(false)),
+                "roomId", Message.class, String.class);
+
+        for (String roomId : roomIds) {
+            try {
+                logger.info("Numbered " + backfill(roomId) + " messages in room " + roomId);
+            } catch (RuntimeException e) {
+                // Another instance may be numbering the same room, the next startup retries
+                logger.warn("Failed to number the messages in room " + roomId, e);
+            }
+        }
+    }
+
+    /**
+     * Numbers the messages of a room that have no sequence number.
+     *
+     * @param roomId the room's id
+     * @return the number of messages numbered
+     */
+    private int backfill(String roomId) {
+        Query lowestQuery = new Query(Criteria.where("roomId").is(roomId).and("sequence").exists(true))
+                .with(Sort.by(Sort.Direction.ASC, "sequence"));
+        Message lowest = mongoTemplate.findOne(lowestQuery, Message.class);
+        long sequence = Math.min(lowest != null ? lowest.getSequence() : 1, 1) - 1;
+
+        Query legacyQuery = new Query(Criteria.where("roomId").is(roomId).and("sequence").exists(false))
+                .with(Sort.by(Sort.Direction.DESC, "_id"));
+        legacyQuery.fields().include("_id");
+
+        int count = 0;
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class);
+
+        try (Stream<Message> messages = mongoTemplate.stream(legacyQuery, Message.class)) {
+            for (Message message : (Iterable<Message>) messages::iterator) {
+                operations.updateOne(new Query(Criteria.where("_id").is(message.getId()).and("sequence").exists(false)),
+                        new Update().set("sequence", sequence--));
+                count++;
+
+                if (count % BATCH_SIZE == 0) {
+                    operations.execute();
+                    operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class);
+                }
+            }
+        }
+
+        if (count % BATCH_SIZE != 0) {
+            operations.execute();
+        }
+        return count;
+    }
+
+}
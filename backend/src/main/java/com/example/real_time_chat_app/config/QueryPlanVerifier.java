@@ -0,0 +1,198 @@
+package com.example.real_time_chat_app.config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.Invitation;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.model.MessageCleanupTask;
+import com.example.real_time_chat_app.model.MessageSequence;
+import com.example.real_time_chat_app.model.RevokedToken;
+import com.example.real_time_chat_app.model.Room;
+import com.example.real_time_chat_app.model.User;
+
+/**
+ * Runs explain on the query used by each repository method at startup and fails
+ * the startup if any of them would scan a whole collection or sort in memory.
+ * Missing collections are created first, since explain on a missing collection
+ * always passes. New repository queries need to be added to the list of query
+ * shapes, which QueryPlanVerifierTest checks against the queries the
+ * repositories actually send.
+ */
+@Component
+@ConditionalOnProperty(name = "mongodb.query-plan-verification.enabled", havingValue = "true")
+public class QueryPlanVerifier implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanVerifier.class);
+
+    // Stages of plans that read every document or sort without an index
+    private static final List<String> REJECTED_STAGES = List.of("COLLSCAN", "SORT", "EOF");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> rejectedQueries = new ArrayList<>();
+
+        for (QueryShape queryShape : getQueryShapes()) {
+            if (!mongoTemplate.collectionExists(queryShape.entityClass)) {
+                mongoTemplate.createCollection(queryShape.entityClass);
+            }
+
+            Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(queryShape.entityClass))
+                    .find(queryShape.filter)
+                    .sort(queryShape.sort)
+                    .limit(1)
+                    .explain();
+
+            Object winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan");
+            List<String> stages = REJECTED_STAGES.stream().filter(stage -> containsStage(winningPlan, stage))
+                    .toList();
+
+            if (!stages.isEmpty()) {
+                rejectedQueries.add(queryShape.name + " " + stages);
+            } else {
+                logger.debug("Query plan verified for " + queryShape.name);
+            }
+        }
+
+        if (!rejectedQueries.isEmpty()) {
+            throw new IllegalStateException("Queries are not fully indexed: " + String.join(", ", rejectedQueries));
+        }
+    }
+
+    /**
+     * Gets the filter and sort of every repository query with sample values.
+     *
+     * @return a list of query shapes
+     */
+    List<QueryShape> getQueryShapes() {
+        String roomId = new ObjectId().toHexString();
+        ObjectId messageId = new ObjectId();
+        ObjectId userId = new ObjectId();
+        Document idsIn = new Document("$in", List.of(new ObjectId(), new ObjectId()));
+
+        List<QueryShape> queryShapes = new ArrayList<>();
+        queryShapes.add(new QueryShape("MessageRepository.findByRoomIdOrderBySequenceDesc", Message.class,
+                new Document("roomId", roomId).append("sequence", new Document("$exists", true)),
+                new Document("sequence", -1)));
+        queryShapes.add(new QueryShape("MessageRepository.findByRoomIdAndSequenceLessThanOrderBySequenceDesc",
+                Message.class, new Document("roomId", roomId)
+                        .append("sequence", new Document("$exists", true).append("$lt", 0L)),
+                new Document("sequence", -1)));
+        queryShapes.add(new QueryShape("MessageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc",
+                Message.class, new Document("roomId", roomId)
+                        .append("sequence", new Document("$exists", true).append("$gt", 0L)),
+                new Document("sequence", 1)));
+        queryShapes.add(new QueryShape("MessageRepository.findById", Message.class,
+                new Document("_id", messageId), new Document()));
+        queryShapes.add(new QueryShape("MessageCleanupService.deleteNextBatch", Message.class,
+                new Document("roomId", roomId), new Document("_id", 1)));
+        queryShapes.add(new QueryShape("MessageSequenceRepository.allocate", MessageSequence.class,
+                new Document("_id", roomId).append("deletedAt", new Document("$exists", false)), new Document()));
+        queryShapes.add(new QueryShape("MessageSequenceRepository.markDeleted", MessageSequence.class,
+                new Document("_id", roomId), new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.findById", Room.class,
+                new Document("_id", new ObjectId()), new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.findAllById", Room.class,
+                new Document("_id", idsIn), new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.addUser", Room.class,
+                new Document("_id", new ObjectId()).append("$or", List.of(
+                        new Document("users.49", new Document("$exists", false)),
+                        new Document("users", userId.toHexString()))),
+                new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.removeUser", Room.class,
+                new Document("_id", new ObjectId()), new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.rename", Room.class,
+                new Document("_id", new ObjectId()).append("owner", userId.toHexString()), new Document()));
+        queryShapes.add(new QueryShape("RoomRepository.updateLastMessage", Room.class,
+                new Document("_id", new ObjectId()).append("$or", List.of(
+                        new Document("lastMessageSequence", new Document("$exists", false)),
+                        new Document("lastMessageSequence", new Document("$lt", 0L)))),
+                new Document()));
+        queryShapes.add(new QueryShape("UserRepository.findByEmail", User.class,
+                new Document("email", "user@example.com"), new Document()));
+        queryShapes.add(new QueryShape("UserRepository.findProfilesByIdIn", User.class,
+                new Document("_id", idsIn), new Document()));
+        queryShapes.add(new QueryShape("UserRepository.addRoom", User.class,
+                new Document("_id", userId).append("$or", List.of(
+                        new Document("rooms.49", new Document("$exists", false)),
+                        new Document("rooms", roomId))),
+                new Document()));
+        queryShapes.add(new QueryShape("UserRepository.removeRoom", User.class,
+                new Document("_id", userId), new Document()));
+        queryShapes.add(new QueryShape("UserRepository.removeRoomFromUsers", User.class,
+                new Document("_id", idsIn).append("rooms", roomId), new Document()));
+        queryShapes.add(new QueryShape("UserRepository.updatePassword", User.class,
+                new Document("email", "user@example.com"), new Document()));
+        queryShapes.add(new QueryShape("MessageCleanupTaskRepository.findFirstByCompletedFalseOrderByCreatedAtAsc",
+                MessageCleanupTask.class, new Document("completed", false), new Document("createdAt", 1)));
+        queryShapes.add(new QueryShape("InvitationRepository.findByToken", Invitation.class,
+                new Document("token", "token"), new Document()));
+        queryShapes.add(new QueryShape("RevokedTokenRepository.existsById", RevokedToken.class,
+                new Document("_id", "tokenId"), new Document()));
+        queryShapes.add(new QueryShape("RevokedTokenRepository.findByRevokedAtGreaterThanEqual", RevokedToken.class,
+                new Document("revokedAt", new Document("$gte", new Date())), new Document()));
+        return queryShapes;
+    }
+
+    /**
+     * Checks if a stage appears anywhere in an explain plan.
+     *
+     * @param plan  a part of the explain output
+     * @param stage the stage name
+     * @return true if the stage is used by the plan
+     */
+    private boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            for (Object value : document.values()) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        } else if (plan instanceof List<?> list) {
+            for (Object value : list) {
+                if (containsStage(value, stage)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** The filter and sort used by a repository query. */
+    static class QueryShape {
+
+        final String name;
+
+        final Class<?> entityClass;
+
+        final Document filter;
+
+        final Document sort;
+
+        QueryShape(String name, Class<?> entityClass, Document filter, Document sort) {
+            this.name = name;
+            this.entityClass = entityClass;
+            this.filter = filter;
+            this.sort = sort;
+        }
+    }
+
+}
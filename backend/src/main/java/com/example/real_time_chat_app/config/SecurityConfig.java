@@ -1,5 +1,6 @@
 package com.example.real_time_chat_app.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,7 +14,11 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 
+import com.example.real_time_chat_app.util.BoundedBCryptPasswordEncoder;
 import com.example.real_time_chat_app.util.JwtRequestFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 import static org.springframework.security.config.Customizer.withDefaults;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -28,11 +33,30 @@ public class SecurityConfig {
         @Autowired
         private JwtRequestFilter jwtRequestFilter;
 
+        /**
+         * Hashes passwords on a bounded executor. Stored hashes with a different
+         * work factor are rehashed the next time the user logs in. Without a
+         * configured queue capacity, two hashes per thread can wait, which keeps
+         * the number of servlet threads blocked on hashing small.
+         */
         @Bean
-        BCryptPasswordEncoder bCryptPasswordEncoder() {
-                return new BCryptPasswordEncoder();
+        BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${security.bcrypt.strength:10}") int strength,
+                        @Value("${security.bcrypt.threads:0}") int threads,
+                        @Value("${security.bcrypt.queue-capacity:0}") int queueCapacity,
+                        MeterRegistry meterRegistry) {
+                if (threads <= 0) {
+                        threads = Runtime.getRuntime().availableProcessors();
+                }
+                if (queueCapacity <= 0) {
+                        queueCapacity = threads * 2;
+                }
+                return new BoundedBCryptPasswordEncoder(strength, threads, queueCapacity, meterRegistry);
         }
 
+        /**
+         * Only the health endpoint of the actuator is open to every user; metrics
+         * and message cleanup need the ADMIN role.
+         */
         @Bean
         SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
                 http
@@ -41,8 +65,13 @@ public class SecurityConfig {
 
                                                 .requestMatchers("/api/users/login",
                                                                 "/api/users/register",
-                                                                "/ws/**")
+                                                                "/ws/**",
+                                                                "/stomp")
                                                 .permitAll()
+                                                .requestMatchers("/actuator/health")
+                                                .authenticated()
+                                                .requestMatchers("/actuator/**")
+                                                .hasRole("ADMIN")
                                                 .anyRequest()
                                                 .authenticated())
 
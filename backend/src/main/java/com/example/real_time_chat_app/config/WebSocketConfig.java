@@ -1,18 +1,36 @@
 package com.example.real_time_chat_app.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import java.util.List;
+
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import com.example.real_time_chat_app.util.CompressionHandshakeHandler;
+import com.example.real_time_chat_app.util.CompressionMetrics;
 import com.example.real_time_chat_app.util.JwtChannelInterceptor;
 import com.example.real_time_chat_app.util.JwtHandshakeInterceptor;
+import com.example.real_time_chat_app.util.PayloadEncodingInterceptor;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 
-/** Configuration for the web socket. */
+/**
+ * Configuration for the web socket. When virtual threads are enabled with
+ * spring.threads.virtual.enabled on Java 21, the inbound and outbound channels
+ * run each message on a virtual thread instead of the small default pools, so
+ * handlers blocked on database calls do not hold up other sessions. Messages
+ * of a session are handled and sent in order either way.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
@@ -20,22 +38,92 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private JwtChannelInterceptor jwtChannelInterceptor;
 
+    @Autowired
+    private JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Autowired
+    private PayloadEncodingInterceptor payloadEncodingInterceptor;
+
+    @Autowired
+    private CompressionHandshakeHandler compressionHandshakeHandler;
+
+    @Autowired
+    private CompressionMetrics compressionMetrics;
+
+    @Autowired
+    private Environment environment;
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(true);
     }
 
+    @Override
     public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
-        registration.interceptors(jwtChannelInterceptor);
+        registration.interceptors(jwtChannelInterceptor, payloadEncodingInterceptor.getInboundInterceptor());
+
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        registration.interceptors(payloadEncodingInterceptor);
+
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("ws-outbound-"));
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(payloadEncodingInterceptor);
+        registration.addDecoratorFactory(compressionMetrics);
+    }
+
+    /**
+     * Adds a CBOR converter for messages sent with the application/cbor content
+     * type. It only matches that content type, so JSON stays the default.
+     */
+    @Override
+    public boolean configureMessageConverters(@NonNull List<MessageConverter> messageConverters) {
+        MappingJackson2MessageConverter cborConverter = new MappingJackson2MessageConverter(
+                CBORMapper.builder().findAndAddModules().build(), PayloadEncodingInterceptor.APPLICATION_CBOR);
+        cborConverter.setStrictContentTypeMatch(true);
+        messageConverters.add(cborConverter);
+        return true;
     }
 
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(true);
+
+        // Plain WebSocket endpoint without SockJS framing, with optional compression
+        registry.addEndpoint("/stomp")
+                .setHandshakeHandler(compressionHandshakeHandler)
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(jwtHandshakeInterceptor);
+
+        // SockJS endpoint for clients that can not open a WebSocket
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
-                .addInterceptors(new JwtHandshakeInterceptor())
+                .addInterceptors(jwtHandshakeInterceptor)
                 .withSockJS();
     }
 
+    /**
+     * Creates an executor that starts a virtual thread for each task.
+     * 
+     * @param threadNamePrefix the prefix of the thread names
+     * @return the executor
+     */
+    private SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
 }
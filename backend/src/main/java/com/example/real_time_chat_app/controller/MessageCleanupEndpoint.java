@@ -0,0 +1,31 @@
+package com.example.real_time_chat_app.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.MessageCleanupTask;
+import com.example.real_time_chat_app.service.MessageCleanupService;
+
+/** Actuator endpoint for the progress of deleting the messages of deleted rooms. */
+@Component
+@Endpoint(id = "messagecleanup")
+public class MessageCleanupEndpoint {
+
+    @Autowired
+    private MessageCleanupService messageCleanupService;
+
+    /**
+     * Gets the cleanup tasks with the number of messages deleted so far.
+     * 
+     * @return a list of cleanup tasks
+     */
+    @ReadOperation
+    public List<MessageCleanupTask> tasks() {
+        return messageCleanupService.getTasks();
+    }
+
+}
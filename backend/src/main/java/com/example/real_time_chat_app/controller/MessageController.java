@@ -1,21 +1,38 @@
 package com.example.real_time_chat_app.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import com.example.real_time_chat_app.dto.ResyncCursorDTO;
+import com.example.real_time_chat_app.dto.RoomResyncDTO;
+import com.example.real_time_chat_app.exception.MessagePersistenceBusyException;
+import com.example.real_time_chat_app.exception.RoomDeletedException;
 import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.model.Room;
 import com.example.real_time_chat_app.service.MessageService;
+import com.example.real_time_chat_app.service.RoomEventPublisher;
+import com.example.real_time_chat_app.service.RoomService;
 import com.example.real_time_chat_app.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import java.security.Principal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /** Message controller. */
 @RestController
@@ -28,33 +45,68 @@ public class MessageController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private RoomEventPublisher roomEventPublisher;
+
+    @Value("${messages.resync.max-rooms:100}")
+    private int maxResyncRooms;
+
     /**
-     * Creates and sends a new message to a room.
+     * Creates and sends a new message to a room, then sends the room's new last
+     * message to the room's members.
      * 
      * @param roomId    the room id where the message was sent from
      * 
      * @param message   the message the user is sending
      * 
      * @param principal the currently authenticated user
-     * 
-     * @return a new Message object
      */
     @MessageMapping("/chat.sendMessage/{roomId}")
-    @SendTo("/topic/room/{roomId}")
-    public Message sendMessage(@DestinationVariable String roomId,
+    public void sendMessage(@DestinationVariable String roomId,
             @Valid @Payload Message message,
             Principal principal) {
 
         if (userService.checkIfInRoom(roomId, principal.getName())) {
+            // The id and sequence are always set by the server
+            message.setId(null);
+            message.setSequence(null);
+            message.setRoomId(roomId);
             message.setTimestamp(LocalDateTime.now());
-            return messageService.createMessage(message);
-        } else {
-            return null;
+            Message savedMessage = messageService.createMessage(message);
+            messagingTemplate.convertAndSend("/topic/room/" + roomId, savedMessage);
+
+            Room room = roomService.getRoomById(roomId);
+            if (room != null) {
+                messageService.setLastMessage(room, savedMessage);
+                roomEventPublisher.sendRoomUpdate(room, roomService.getUserRoom(room));
+            }
         }
     }
 
     /**
-     * Retrieves messages for a specific room.
+     * Tells the sender that their message was not sent because it could not be
+     * queued for saving or its room was deleted.
+     * 
+     * @param ex the exception
+     * @return a map of the errors
+     */
+    @MessageExceptionHandler({ MessagePersistenceBusyException.class, RoomDeletedException.class })
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public Map<String, String> handleMessageNotSaved(RuntimeException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("error", ex.getMessage());
+        return errors;
+    }
+
+    /**
+     * Retrieves the most recent messages for a specific room, up to the legacy
+     * history limit.
      * 
      * @param roomId the room id
      * @return ResponseEntity with a list of messages
@@ -68,4 +120,66 @@ public class MessageController {
         }
     }
 
+    /**
+     * Retrieves a page of messages for a specific room, newest first.
+     * 
+     * @param roomId    the room id
+     * @param before    the cursor to get messages older than
+     * @param after     the cursor to get messages newer than
+     * @param limit     the maximum number of messages to return
+     * @param principal the currently authenticated user
+     * @return ResponseEntity with a page of messages or a bad request if the
+     *         cursor is invalid
+     */
+    @GetMapping("/{roomId}/history")
+    public ResponseEntity<?> getMessageHistory(@PathVariable String roomId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            Principal principal) {
+
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().body("Only one of before or after can be set.");
+        }
+
+        if (userService.checkIfInRoom(roomId, principal.getName())) {
+            try {
+                return ResponseEntity.ok(messageService.getMessagePage(roomId, before, after, limit));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor.");
+            }
+        } else {
+            return ResponseEntity.badRequest().body("Failed to get messages.");
+        }
+    }
+
+    /**
+     * Retrieves the messages missed in several rooms after a reconnect in one
+     * response. Rooms the user is not in are left out.
+     * 
+     * @param cursors   a map of room ids to the last message seen in each room, or
+     *                  null if no message was seen
+     * @param principal the currently authenticated user
+     * @return ResponseEntity with a list of missed messages per room or a bad
+     *         request if there are too many rooms or an id is invalid
+     */
+    @PostMapping("/resync")
+    public ResponseEntity<?> resyncMessages(@RequestBody Map<String, ResyncCursorDTO> cursors, Principal principal) {
+        if (cursors.size() > maxResyncRooms) {
+            return ResponseEntity.badRequest().body("Too many rooms.");
+        }
+
+        List<RoomResyncDTO> rooms = new ArrayList<>();
+        try {
+            for (Map.Entry<String, ResyncCursorDTO> entry : cursors.entrySet()) {
+                if (userService.checkIfInRoom(entry.getKey(), principal.getName())) {
+                    rooms.add(messageService.getMissedMessages(entry.getKey(), entry.getValue()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Invalid message id.");
+        }
+        return ResponseEntity.ok(rooms);
+    }
+
 }
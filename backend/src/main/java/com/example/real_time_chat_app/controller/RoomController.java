@@ -10,7 +10,6 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,6 +22,7 @@ import com.example.real_time_chat_app.model.Message;
 import com.example.real_time_chat_app.model.Room;
 import com.example.real_time_chat_app.model.User;
 import com.example.real_time_chat_app.service.InvitationService;
+import com.example.real_time_chat_app.service.RoomEventPublisher;
 import com.example.real_time_chat_app.service.RoomService;
 import com.example.real_time_chat_app.service.UserService;
 
@@ -49,7 +49,7 @@ public class RoomController {
     private InvitationService invitationService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RoomEventPublisher roomEventPublisher;
 
     /**
      * Creates a new room for a user.
@@ -63,9 +63,12 @@ public class RoomController {
     public ResponseEntity<?> createRoom(@Valid @RequestBody RoomCreationDTO roomCreationDTO, Principal principal) {
 
         User user = userService.findByEmail(principal.getName()).get();
-        if (user != null) {
-            return ResponseEntity
-                    .ok(roomService.createRoom(roomCreationDTO.getRoomName(), user.getId(), user.getEmail()));
+        Room room = user != null
+                ? roomService.createRoom(roomCreationDTO.getRoomName(), user.getId(), user.getEmail())
+                : null;
+
+        if (room != null) {
+            return ResponseEntity.ok(room);
         } else {
             return ResponseEntity.badRequest().body("Failed to create room");
         }
@@ -117,34 +120,21 @@ public class RoomController {
     }
 
     /**
-     * Updates the last message for a room.
+     * Broadcasts the last message for a room. The last message is saved and sent
+     * when the message is created, so this is only kept for older clients.
      * 
      * @param roomId  the room id
      * @param message the message being sent
-     * @return a user room dto if the room exists or an empty room if it does not
-     *         exist
      */
     @MessageMapping("/updateRoomLastMessage/{roomId}")
-    @SendTo("/topic/rooms")
-    public UserRoomDTO updateRoomLastMessage(@DestinationVariable String roomId,
+    public void updateRoomLastMessage(@DestinationVariable String roomId,
             @Payload Message message, Principal principal) {
 
-        Room room = roomService.getRoomById(roomId);
-
-        if (room != null && userService.checkIfInRoom(roomId, principal.getName())) {
-            room.setLastMessageSenderFirstName(message.getSenderFirstName());
-            room.setLastMessageSenderId(message.getSenderId());
-            room.setLastMessage(message.getContent());
-            roomService.saveRoomLastMessage(room);
-
-            UserRoomDTO userRoom = roomService.getUserRoom(roomId);
-            userRoom.setLastMessage(message.getContent());
-            userRoom.setLastMessageSenderFirstName(message.getSenderFirstName());
-            userRoom.setLastMessageSenderId(message.getSenderId());
-
-            return roomService.getUserRoom(roomId);
-        } else {
-            return null;
+        if (userService.checkIfInRoom(roomId, principal.getName())) {
+            Room room = roomService.getRoomById(roomId);
+            if (room != null) {
+                roomEventPublisher.sendRoomUpdate(room, roomService.getUserRoom(room));
+            }
         }
     }
 
@@ -261,13 +251,14 @@ public class RoomController {
             User user = userService.findByEmail(principal.getName()).get();
 
             if (roomId != null && user.getRooms().contains(roomId)) {
-                UserRoomDTO room = roomService.getUserRoom(roomId);
-                room.setType("userRoomDelete");
+                Room room = roomService.getRoomById(roomId);
+                UserRoomDTO userRoom = roomService.getUserRoom(room);
+                userRoom.setType("userRoomDelete");
 
                 boolean deletedRoom = roomService.deleteRoom(roomId, principal.getName());
 
                 if (deletedRoom) {
-                    messagingTemplate.convertAndSend("/topic/room/delete", room);
+                    roomEventPublisher.sendRoomDeletion(room, userRoom);
                     return ResponseEntity.ok("Room deleted");
                 } else {
                     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Failed to delete room");
@@ -294,13 +285,11 @@ public class RoomController {
             Principal principal) {
 
         if ((roomId != null && !newName.isEmpty()) && userService.checkIfInRoom(roomId, principal.getName())) {
-            UserRoomDTO room = roomService.getUserRoom(roomId);
-            room.setName(newName);
-
             boolean changedRoomName = roomService.changeRoomName(roomId, principal.getName(), newName);
 
             if (changedRoomName) {
-                messagingTemplate.convertAndSend("/topic/rooms", room);
+                Room room = roomService.getRoomById(roomId);
+                roomEventPublisher.sendRoomUpdate(room, roomService.getUserRoom(room));
                 return ResponseEntity.ok("Room name changed");
             } else {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Failed to change room name");
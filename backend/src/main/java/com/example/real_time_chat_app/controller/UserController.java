@@ -4,23 +4,26 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.real_time_chat_app.dto.LoginDTO;
+import com.example.real_time_chat_app.dto.RoomUserDTO;
 import com.example.real_time_chat_app.dto.UpdateProfileRequestDTO;
 import com.example.real_time_chat_app.dto.UserRegistrationDTO;
 import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.service.RoomEventPublisher;
 import com.example.real_time_chat_app.service.RoomService;
+import com.example.real_time_chat_app.service.TokenRevocationService;
 import com.example.real_time_chat_app.service.UserService;
 import com.example.real_time_chat_app.util.AuthenticationResponse;
 import com.example.real_time_chat_app.util.JwtUtil;
 
 import jakarta.validation.Valid;
 import java.security.Principal;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -29,6 +32,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
@@ -53,7 +57,10 @@ public class UserController {
     private AuthenticationManager authenticationManager;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RoomEventPublisher roomEventPublisher;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
 
     /**
      * Registers a new user for the app.
@@ -100,11 +107,23 @@ public class UserController {
         }
 
         final UserDetails userDetails = userDetailsService.loadUserByUsername(loginDTO.getEmail());
-        final String accessToken = jwtUtil.generateToken(userDetails.getUsername(), "USER");
+        final String accessToken = jwtUtil.generateToken(userDetails);
 
         return ResponseEntity.ok(new AuthenticationResponse(accessToken));
     }
 
+    /**
+     * Logs out the currently authenticated user by revoking their access token.
+     * 
+     * @param authorizationHeader the authorization header with the access token
+     * @return an empty ResponseEntity
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authorizationHeader) {
+        tokenRevocationService.revoke(jwtUtil.extractAllClaims(authorizationHeader.substring(7)));
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Gets user information for the currently authenticated user.
      * 
@@ -127,7 +146,7 @@ public class UserController {
      */
     @PutMapping("/saveUserProfile")
     public ResponseEntity<?> saveUserProfile(@Valid @RequestBody UpdateProfileRequestDTO profileDataDTO,
-            Principal principal) {
+            Principal principal, @RequestHeader("Authorization") String authorizationHeader) {
 
         String currentUserId = userService.findByEmail(principal.getName()).get().getId();
 
@@ -155,8 +174,22 @@ public class UserController {
                     unsavedUser.setPassword(profileDataDTO.getCurrentPassword());
                 }
 
+                // Taken before the new token is issued so the new token is kept
+                Date issuedBefore = new Date();
                 String accessToken = userService.updateUser(unsavedUser, profileDataDTO.getCurrentPassword());
-                messagingTemplate.convertAndSend("/topic/user/update", profileDataDTO);
+
+                // Older tokens, including those of other sessions, may have the old email or password
+                tokenRevocationService.revokeIssuedBefore(principal.getName(), issuedBefore);
+                tokenRevocationService.revoke(jwtUtil.extractAllClaims(authorizationHeader.substring(7)));
+
+                User savedUser = userService.findById(currentUserId).get();
+                RoomUserDTO profile = new RoomUserDTO();
+                profile.setId(savedUser.getId());
+                profile.setFirstName(savedUser.getFirstName());
+                profile.setLastName(savedUser.getLastName());
+                profile.setProfilePictureUrl(savedUser.getProfilePictureURL());
+                roomEventPublisher.sendUserProfileUpdate(savedUser, principal.getName(), profile);
+
                 return ResponseEntity.ok(new AuthenticationResponse(accessToken));
             } else {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid password");
@@ -175,8 +208,8 @@ public class UserController {
     @GetMapping("/rooms")
     public ResponseEntity<?> getRooms(Principal principal) {
         if (principal != null) {
-            String userId = userService.findByEmail(principal.getName()).get().getId();
-            return ResponseEntity.ok(roomService.getUserRooms(userId));
+            User user = userService.findByEmail(principal.getName()).get();
+            return ResponseEntity.ok(roomService.getUserRooms(user));
         } else {
             return ResponseEntity.badRequest().body("Failed to get rooms.");
         }
@@ -0,0 +1,42 @@
+package com.example.real_time_chat_app.dto;
+
+import java.util.List;
+
+import com.example.real_time_chat_app.model.Message;
+
+/** DTO for a page of a room's message history, ordered newest first. */
+public class MessagePageDTO {
+
+    private List<Message> messages;
+
+    /** Cursor for the next page of older messages, or null if there are none. */
+    private String nextCursor;
+
+    /** Cursor for fetching messages newer than this page. */
+    private String previousCursor;
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public void setPreviousCursor(String previousCursor) {
+        this.previousCursor = previousCursor;
+    }
+
+}
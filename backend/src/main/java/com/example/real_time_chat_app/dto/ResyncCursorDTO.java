@@ -0,0 +1,29 @@
+package com.example.real_time_chat_app.dto;
+
+/**
+ * DTO for the last message a client saw in a room. The sequence number is used
+ * when it is set, otherwise the message id.
+ */
+public class ResyncCursorDTO {
+
+    private String lastMessageId;
+
+    private Long lastSequence;
+
+    public String getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(String lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(Long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.example.real_time_chat_app.dto;
+
+import java.util.List;
+
+import com.example.real_time_chat_app.model.Message;
+
+/** DTO for the messages a client missed in one room, ordered oldest first. */
+public class RoomResyncDTO {
+
+    private String roomId;
+
+    private List<Message> messages;
+
+    /** True if there are more missed messages after the last one returned. */
+    private boolean hasMore;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+}
@@ -19,6 +19,11 @@ public class UserRoomDTO {
     @Size(max = 1000, message = "Last message content needs to be a maximum of 1000 characters long")
     private String lastMessage;
 
+    @Size(max = 64, message = "Last message id needs to be up to 64 characters long")
+    private String lastMessageId;
+
+    private Long lastMessageSequence;
+
     @NotBlank(message = "Last message sender id is required")
     @Size(max = 64, message = "Last message sender id needs to be 2 to 64 characters long")
     private String lastMessageSenderId;
@@ -76,6 +81,22 @@ public class UserRoomDTO {
         this.lastMessage = lastMessage;
     }
 
+    public String getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(String lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Long getLastMessageSequence() {
+        return lastMessageSequence;
+    }
+
+    public void setLastMessageSequence(Long lastMessageSequence) {
+        this.lastMessageSequence = lastMessageSequence;
+    }
+
     public String getId() {
         return id;
     }
@@ -1,5 +1,6 @@
 package com.example.real_time_chat_app.exception;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.validation.FieldError;
@@ -35,6 +36,21 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errors);
     }
 
+    /**
+     * Handles password hashing being rejected because too many logins or
+     * registrations are in progress.
+     * 
+     * @param ex the exception
+     * @return a too many requests response with a map of the errors
+     */
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<?> handlePasswordHashingBusyException(PasswordHashingBusyException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("error", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(errors);
+    }
+
     /**
      * Handles all other exceptions besides validation.
      * 
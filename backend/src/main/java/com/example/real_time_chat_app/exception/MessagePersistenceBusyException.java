@@ -0,0 +1,19 @@
+package com.example.real_time_chat_app.exception;
+
+/**
+ * Thrown when a message can not be queued for saving because the queue stayed
+ * full or the writer stopped.
+ */
+public class MessagePersistenceBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MessagePersistenceBusyException(String message) {
+        super(message);
+    }
+
+    public MessagePersistenceBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.real_time_chat_app.exception;
+
+/**
+ * Thrown when the password hashing executor is saturated and a password can not
+ * be hashed or checked right now.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
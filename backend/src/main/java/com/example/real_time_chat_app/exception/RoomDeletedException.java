@@ -0,0 +1,19 @@
+package com.example.real_time_chat_app.exception;
+
+/**
+ * Thrown when a message is sent to a room that was deleted, so that it is not
+ * saved after the room's messages were cleaned up.
+ */
+public class RoomDeletedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RoomDeletedException(String message) {
+        super(message);
+    }
+
+    public RoomDeletedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.example.real_time_chat_app.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.NotBlank;
@@ -14,6 +15,7 @@ public class Invitation {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     @NotBlank(message = "Token is required")
     @Size(max = 1000, message = "Token length must be up to 1000 characters in length")
     private String token;
@@ -3,15 +3,25 @@ package com.example.real_time_chat_app.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 /** The message model. */
 @Document(collection = "messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "roomId_id", def = "{'roomId': 1, '_id': -1}"),
+        // Messages saved before sequence numbers were added have none
+        @CompoundIndex(name = "roomId_sequence", def = "{'roomId': 1, 'sequence': 1}", unique = true,
+                partialFilter = "{'sequence': {'$exists': true}}")
+})
 public class Message {
 
     @Id
@@ -45,10 +55,34 @@ public class Message {
     @Size(max = 64, message = "Room id needs to be up to 64 characters long")
     private String roomId;
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY) // Only ever set by the server
+    private Long sequence; // Increases with each message saved in the room, with gaps where a save failed
+
     @NotBlank(message = "Type is required")
     @Size(max = 20, message = "Type needs to be up to 20 characters long")
     private String type = "message";
 
+    public Message() {
+    }
+
+    /**
+     * Creates a copy of a message.
+     * 
+     * @param message the message to copy
+     */
+    public Message(Message message) {
+        this.id = message.id;
+        this.content = message.content;
+        this.timestamp = message.timestamp;
+        this.senderId = message.senderId;
+        this.senderEmail = message.senderEmail;
+        this.senderFirstName = message.senderFirstName;
+        this.senderLastName = message.senderLastName;
+        this.roomId = message.roomId;
+        this.sequence = message.sequence;
+        this.type = message.type;
+    }
+
     public void setType(String type) {
         this.type = type;
     }
@@ -105,6 +139,14 @@ public class Message {
         this.roomId = roomId;
     }
 
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
     public String getSenderFirstName() {
         return senderFirstName;
     }
@@ -0,0 +1,67 @@
+package com.example.real_time_chat_app.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/** The model for deleting the messages of a deleted room in the background. */
+@Document(collection = "messageCleanupTasks")
+@CompoundIndex(name = "completed_createdAt", def = "{'completed': 1, 'createdAt': 1}") // Oldest unfinished task first
+public class MessageCleanupTask {
+
+    @Id
+    private String roomId;
+
+    private long deletedMessages;
+
+    private boolean completed;
+
+    private LocalDateTime createdAt;
+
+    @Indexed(expireAfterSeconds = 604800) // Completed tasks are kept for a week
+    private LocalDateTime completedAt;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public long getDeletedMessages() {
+        return deletedMessages;
+    }
+
+    public void setDeletedMessages(long deletedMessages) {
+        this.deletedMessages = deletedMessages;
+    }
+
+    public boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.example.real_time_chat_app.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The model for the last message sequence number given out in a room. It is
+ * kept apart from the room so that saving a room cannot move it back. When the
+ * room is deleted it is marked deleted instead of removed, so no more messages
+ * can be numbered and saved in the room while or after its messages are
+ * cleaned up.
+ */
+@Document(collection = "messageSequences")
+public class MessageSequence {
+
+    @Id
+    private String roomId;
+
+    private long value;
+
+    @Indexed(expireAfterSeconds = 604800) // Deleted rooms are kept for a week
+    private LocalDateTime deletedAt;
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(String roomId) {
+        this.roomId = roomId;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+}
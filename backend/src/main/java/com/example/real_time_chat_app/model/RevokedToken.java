@@ -0,0 +1,70 @@
+package com.example.real_time_chat_app.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The model for a token that was revoked before it expired. A record with a
+ * subject revokes every token of that subject issued before a time instead of a
+ * single token.
+ */
+@Document(collection = "revokedTokens")
+public class RevokedToken {
+
+    @Id
+    private String tokenId;
+
+    @Indexed
+    private Date revokedAt;
+
+    @Indexed(expireAfterSeconds = 0) // Removed once the token would have expired anyway
+    private Date expiresAt;
+
+    private String subject;
+
+    private Date issuedBefore;
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public Date getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(Date revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public Date getIssuedBefore() {
+        return issuedBefore;
+    }
+
+    public void setIssuedBefore(Date issuedBefore) {
+        this.issuedBefore = issuedBefore;
+    }
+
+}
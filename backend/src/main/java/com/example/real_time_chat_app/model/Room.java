@@ -47,6 +47,11 @@ public class Room {
     @Size(max = 1000, message = "Last message content needs to be a maximum of 1000 characters long")
     private String lastMessage;
 
+    @Size(max = 64, message = "Last message id needs to be up to 64 characters long")
+    private String lastMessageId;
+
+    private Long lastMessageSequence; // Keeps out of order updates from replacing a newer last message
+
     public String getType() {
         return type;
     }
@@ -119,4 +124,20 @@ public class Room {
         this.lastMessage = lastMessage;
     }
 
+    public String getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(String lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Long getLastMessageSequence() {
+        return lastMessageSequence;
+    }
+
+    public void setLastMessageSequence(Long lastMessageSequence) {
+        this.lastMessageSequence = lastMessageSequence;
+    }
+
 }
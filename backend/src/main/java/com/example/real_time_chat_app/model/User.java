@@ -3,6 +3,7 @@ package com.example.real_time_chat_app.model;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import jakarta.validation.constraints.Email;
@@ -16,6 +17,7 @@ public class User {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     @NotBlank(message = "Email is required")
     @Email(message = "Email needs to be valid")
     @Size(max = 64, message = "Email needs to be less than 64 characters long")
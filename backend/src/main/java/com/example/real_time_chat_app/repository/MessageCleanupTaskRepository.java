@@ -0,0 +1,11 @@
+package com.example.real_time_chat_app.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import com.example.real_time_chat_app.model.MessageCleanupTask;
+
+/** Message cleanup task repository */
+public interface MessageCleanupTaskRepository extends MongoRepository<MessageCleanupTask, String> {
+    Optional<MessageCleanupTask> findFirstByCompletedFalseOrderByCreatedAtAsc();
+}
@@ -1,10 +1,25 @@
 package com.example.real_time_chat_app.repository;
 
 import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import com.example.real_time_chat_app.model.Message;
 
-/** Message repository */
+/**
+ * Message repository. Sequence queries only match messages that have a
+ * sequence number, so they can use the partial roomId_sequence index.
+ */
 public interface MessageRepository extends MongoRepository<Message, String> {
-    List<Message> findByRoomId(String id);
+    @Query(value = "{ 'roomId': ?0, 'sequence': { $exists: true } }", sort = "{ 'sequence': -1 }")
+    List<Message> findByRoomIdOrderBySequenceDesc(String roomId, Pageable pageable);
+
+    @Query(value = "{ 'roomId': ?0, 'sequence': { $exists: true, $lt: ?1 } }", sort = "{ 'sequence': -1 }")
+    List<Message> findByRoomIdAndSequenceLessThanOrderBySequenceDesc(String roomId, long sequence,
+            Pageable pageable);
+
+    @Query(value = "{ 'roomId': ?0, 'sequence': { $exists: true, $gt: ?1 } }", sort = "{ 'sequence': 1 }")
+    List<Message> findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc(String roomId, long sequence,
+            Pageable pageable);
 }
@@ -0,0 +1,9 @@
+package com.example.real_time_chat_app.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import com.example.real_time_chat_app.model.MessageSequence;
+
+/** Message sequence repository */
+public interface MessageSequenceRepository extends MongoRepository<MessageSequence, String>,
+        MessageSequenceRepositoryCustom {
+}
@@ -0,0 +1,26 @@
+package com.example.real_time_chat_app.repository;
+
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+
+/** Atomic allocation of message sequence numbers. */
+public interface MessageSequenceRepositoryCustom {
+
+    /**
+     * Reserves the next sequence numbers of a room. The first message in a room
+     * gets sequence number 1.
+     * 
+     * @param roomId the room id
+     * @param count  the number of sequence numbers to reserve
+     * @return the first of the reserved sequence numbers
+     * @throws RoomDeletedException if the room was deleted
+     */
+    long allocate(String roomId, int count);
+
+    /**
+     * Marks a room's sequence as deleted so that no more numbers are reserved in
+     * the room.
+     * 
+     * @param roomId the id of the deleted room
+     */
+    void markDeleted(String roomId);
+}
@@ -0,0 +1,49 @@
+package com.example.real_time_chat_app.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+import com.example.real_time_chat_app.model.MessageSequence;
+
+/**
+ * Reserves sequence numbers with a single $inc on the room's counter, so rooms
+ * never wait on each other and writers to the same room get separate ranges.
+ * The counter of a deleted room does not match, so the upsert tries to create
+ * it again and fails on its id.
+ */
+public class MessageSequenceRepositoryImpl implements MessageSequenceRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public long allocate(String roomId, int count) {
+        Query query = new Query(Criteria.where("_id").is(roomId).and("deletedAt").exists(false));
+        Update update = new Update().inc("value", count);
+        MessageSequence sequence;
+
+        try {
+            sequence = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true).upsert(true), MessageSequence.class);
+        } catch (DuplicateKeyException e) {
+            throw new RoomDeletedException("Room " + roomId + " was deleted", e);
+        }
+
+        return sequence.getValue() - count + 1;
+    }
+
+    @Override
+    public void markDeleted(String roomId) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(roomId)),
+                new Update().set("deletedAt", LocalDateTime.now()), MessageSequence.class);
+    }
+
+}
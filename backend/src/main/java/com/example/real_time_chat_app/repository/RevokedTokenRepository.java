@@ -0,0 +1,12 @@
+package com.example.real_time_chat_app.repository;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import com.example.real_time_chat_app.model.RevokedToken;
+
+/** Revoked token repository */
+public interface RevokedTokenRepository extends MongoRepository<RevokedToken, String> {
+    List<RevokedToken> findByRevokedAtGreaterThanEqual(Date revokedAt);
+}
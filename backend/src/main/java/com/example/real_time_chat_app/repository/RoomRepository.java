@@ -4,5 +4,5 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import com.example.real_time_chat_app.model.Room;
 
 /** Room repository */
-public interface RoomRepository extends MongoRepository<Room, String> {
+public interface RoomRepository extends MongoRepository<Room, String>, RoomRepositoryCustom {
 }
@@ -0,0 +1,46 @@
+package com.example.real_time_chat_app.repository;
+
+import com.example.real_time_chat_app.model.Message;
+
+/** Atomic membership and last message updates for rooms. */
+public interface RoomRepositoryCustom {
+
+    /**
+     * Adds a user to a room's current and all users if the room has fewer than
+     * the maximum number of users.
+     * 
+     * @param roomId   the room id
+     * @param userId   the user id
+     * @param maxUsers the maximum number of users in the room
+     * @return true if the room exists and the user is in it
+     */
+    boolean addUser(String roomId, String userId, int maxUsers);
+
+    /**
+     * Removes a user from a room's current users.
+     * 
+     * @param roomId the room id
+     * @param userId the user id
+     * @return true if the room exists
+     */
+    boolean removeUser(String roomId, String userId);
+
+    /**
+     * Changes a room's name if the room is owned by a user.
+     * 
+     * @param roomId the room id
+     * @param owner  the email of the user who should own the room
+     * @param name   the new name
+     * @return true if the room exists and is owned by the user
+     */
+    boolean rename(String roomId, String owner, String name);
+
+    /**
+     * Sets a message as the last message of its room in a single update. The
+     * update is skipped if the room already has a last message with a higher
+     * sequence number.
+     * 
+     * @param message the saved message
+     */
+    void updateLastMessage(Message message);
+}
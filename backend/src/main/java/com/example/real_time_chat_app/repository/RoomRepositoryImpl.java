@@ -0,0 +1,67 @@
+package com.example.real_time_chat_app.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.model.Room;
+
+/**
+ * Updates room membership with single $addToSet and $pull updates so concurrent
+ * joins and leaves do not overwrite each other.
+ */
+public class RoomRepositoryImpl implements RoomRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean addUser(String roomId, String userId, int maxUsers) {
+        // The room is only matched if it is not full or already has the user
+        Query query = new Query(Criteria.where("_id").is(roomId)
+                .orOperator(Criteria.where("users." + (maxUsers - 1)).exists(false),
+                        Criteria.where("users").is(userId)));
+
+        Update update = new Update()
+                .addToSet("users", userId)
+                .addToSet("allUsers", userId);
+
+        return mongoTemplate.updateFirst(query, update, Room.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean removeUser(String roomId, String userId) {
+        Query query = new Query(Criteria.where("_id").is(roomId));
+        Update update = new Update().pull("users", userId);
+
+        return mongoTemplate.updateFirst(query, update, Room.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean rename(String roomId, String owner, String name) {
+        Query query = new Query(Criteria.where("_id").is(roomId).and("owner").is(owner));
+        Update update = new Update().set("name", name);
+
+        return mongoTemplate.updateFirst(query, update, Room.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void updateLastMessage(Message message) {
+        Query query = new Query(Criteria.where("_id").is(message.getRoomId())
+                .orOperator(Criteria.where("lastMessageSequence").exists(false),
+                        Criteria.where("lastMessageSequence").lt(message.getSequence())));
+
+        Update update = new Update()
+                .set("lastMessageId", message.getId())
+                .set("lastMessageSequence", message.getSequence())
+                .set("lastMessage", message.getContent())
+                .set("lastMessageSenderId", message.getSenderId())
+                .set("lastMessageSenderFirstName", message.getSenderFirstName());
+
+        mongoTemplate.updateFirst(query, update, Room.class);
+    }
+
+}
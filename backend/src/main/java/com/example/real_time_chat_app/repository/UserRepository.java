@@ -1,10 +1,16 @@
 package com.example.real_time_chat_app.repository;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import com.example.real_time_chat_app.model.User;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /** User repository */
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
       Optional<User> findByEmail(String email);
+
+      @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'email': 1, 'firstName': 1, 'lastName': 1, 'profilePictureURL': 1 }")
+      List<User> findProfilesByIdIn(Collection<? extends String> ids);
 }
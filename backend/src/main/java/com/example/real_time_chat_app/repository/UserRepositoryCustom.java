@@ -0,0 +1,45 @@
+package com.example.real_time_chat_app.repository;
+
+import java.util.Collection;
+
+/** Atomic room list and password updates for users. */
+public interface UserRepositoryCustom {
+
+    /**
+     * Adds a room to a user's rooms if the user has fewer than the maximum number
+     * of rooms.
+     * 
+     * @param userId   the user id
+     * @param roomId   the room id
+     * @param maxRooms the maximum number of rooms for a user
+     * @return true if the user exists and has the room
+     */
+    boolean addRoom(String userId, String roomId, int maxRooms);
+
+    /**
+     * Removes a room from a user's rooms.
+     * 
+     * @param userId the user id
+     * @param roomId the room id
+     * @return true if the user exists
+     */
+    boolean removeRoom(String userId, String roomId);
+
+    /**
+     * Removes a room from the rooms of several users in one update.
+     * 
+     * @param userIds the user ids
+     * @param roomId  the room id
+     * @return the number of users that had the room
+     */
+    long removeRoomFromUsers(Collection<String> userIds, String roomId);
+
+    /**
+     * Sets a user's password hash without touching the rest of the user.
+     * 
+     * @param email    the user's email
+     * @param password the new password hash
+     * @return true if the user exists
+     */
+    boolean updatePassword(String email, String password);
+}
@@ -0,0 +1,58 @@
+package com.example.real_time_chat_app.repository;
+
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.real_time_chat_app.model.User;
+
+/**
+ * Updates a user's rooms with single $addToSet and $pull updates so concurrent
+ * changes do not overwrite each other.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean addRoom(String userId, String roomId, int maxRooms) {
+        // The user is only matched if they have room for another room or already have it
+        Query query = new Query(Criteria.where("_id").is(userId)
+                .orOperator(Criteria.where("rooms." + (maxRooms - 1)).exists(false),
+                        Criteria.where("rooms").is(roomId)));
+
+        Update update = new Update().addToSet("rooms", roomId);
+
+        return mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean removeRoom(String userId, String roomId) {
+        Query query = new Query(Criteria.where("_id").is(userId));
+        Update update = new Update().pull("rooms", roomId);
+
+        return mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public long removeRoomFromUsers(Collection<String> userIds, String roomId) {
+        Query query = new Query(Criteria.where("_id").in(userIds).and("rooms").is(roomId));
+        Update update = new Update().pull("rooms", roomId);
+
+        return mongoTemplate.updateMulti(query, update, User.class).getModifiedCount();
+    }
+
+    @Override
+    public boolean updatePassword(String email, String password) {
+        Query query = new Query(Criteria.where("email").is(email));
+        Update update = new Update().set("password", password);
+
+        return mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0;
+    }
+
+}
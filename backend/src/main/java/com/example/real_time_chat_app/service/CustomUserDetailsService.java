@@ -2,16 +2,20 @@ package com.example.real_time_chat_app.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import com.example.real_time_chat_app.model.User;
 import com.example.real_time_chat_app.repository.UserRepository;
 
-/** A custom implementation of UserDetailsService. */
+/**
+ * A custom implementation of UserDetailsService. It also saves rehashed
+ * passwords when the password work factor changes.
+ */
 @Service
 public class CustomUserDetailsService
-                implements UserDetailsService {
+                implements UserDetailsService, UserDetailsPasswordService {
 
         @Autowired
         private UserRepository userRepository;
@@ -33,4 +37,21 @@ public class CustomUserDetailsService
                                 .roles(user.getRole())
                                 .build();
         }
+
+        /**
+         * Saves a password that was rehashed with the current work factor after a
+         * successful login.
+         */
+        @Override
+        public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+
+                // Only the password is set so concurrent room changes are kept
+                if (!userRepository.updatePassword(userDetails.getUsername(), newPassword)) {
+                        throw new UsernameNotFoundException("User not found with email: " + userDetails.getUsername());
+                }
+
+                return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                                .password(newPassword)
+                                .build();
+        }
 }
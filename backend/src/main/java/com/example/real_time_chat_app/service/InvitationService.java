@@ -60,8 +60,16 @@ public class InvitationService {
 
         if (invitation != null && !invitation.getUsed()
                 && (user.getRooms() == null || !(user.getRooms().contains(room.getId())))) {
-            roomService.addUserToRoom(room.getId(), userId);
-            roomService.addRoomToUser(room.getId(), userId);
+            if (!roomService.addUserToRoom(room.getId(), userId)) {
+                return null;
+            }
+
+            // Undo joining the room if the user cannot have another room
+            if (!roomService.addRoomToUser(room.getId(), userId)) {
+                roomService.removeUserFromRoom(room.getId(), userId);
+                return null;
+            }
+
             invitation.setUsed(true);
             invitationRepository.save(invitation);
             return room;
@@ -0,0 +1,318 @@
+package com.example.real_time_chat_app.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.exception.MessagePersistenceBusyException;
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.RoomRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Saves messages in bulk inserts on a background thread. A batch is written
+ * once it reaches the batch size or the flush interval has passed since its
+ * first message. The queue is bounded, so senders wait when the database falls
+ * behind, and it is flushed when the application shuts down. Every queued
+ * message's future is completed, exceptionally if it could not be saved.
+ */
+@Component
+public class MessageBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBatchWriter.class);
+
+    // The longest the writer waits before checking if it was stopped
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MessageSequencer messageSequencer;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messages.persistence.mode:SYNC}")
+    private MessagePersistenceMode persistenceMode;
+
+    @Value("${messages.persistence.batch-size:500}")
+    private int batchSize;
+
+    @Value("${messages.persistence.flush-interval:10}")
+    private long flushInterval;
+
+    @Value("${messages.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${messages.persistence.enqueue-timeout:1000}")
+    private long enqueueTimeout;
+
+    @Value("${messages.persistence.shutdown-timeout:10000}")
+    private long shutdownTimeout;
+
+    private BlockingQueue<PendingMessage> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    // Held to queue a message, and exclusively to stop accepting messages
+    private final ReadWriteLock queueLock = new ReentrantReadWriteLock();
+
+    private Timer flushTimer;
+
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    private void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        flushTimer = Timer.builder("chat.messages.persistence.flush")
+                .description("Time spent saving a batch of messages")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("chat.messages.persistence.batch.size")
+                .description("Number of messages saved per batch")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.persistence.queue", queue, BlockingQueue::size)
+                .description("Messages waiting to be saved")
+                .register(meterRegistry);
+
+        if (persistenceMode != MessagePersistenceMode.SYNC) {
+            running = true;
+            writerThread = new Thread(this::run, "message-batch-writer");
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Queues a copy of a message to be saved, giving the message a new id first
+     * so it can be broadcast before it is saved. The sequence number is set on
+     * the copy when its batch is saved, so the writer thread never changes the
+     * caller's message. Waits for space in the queue if it is full.
+     * 
+     * @param message the message to save
+     * @return a future completed with the saved copy when its batch is saved
+     * @throws MessagePersistenceBusyException if the queue stays full or the
+     *                                         writer stopped
+     */
+    public CompletableFuture<Message> write(Message message) {
+        message.setId(new ObjectId().toHexString());
+
+        PendingMessage pendingMessage = new PendingMessage(new Message(message));
+
+        queueLock.readLock().lock();
+        try {
+            if (!running || !queue.offer(pendingMessage, enqueueTimeout, TimeUnit.MILLISECONDS)) {
+                throw new MessagePersistenceBusyException("Message could not be queued for saving");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagePersistenceBusyException("Interrupted while queueing a message", e);
+        } finally {
+            queueLock.readLock().unlock();
+        }
+        return pendingMessage.future;
+    }
+
+    /** Saves the queued messages until the writer is stopped and the queue is empty. */
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+
+                if (!batch.isEmpty()) {
+                    flushTimer.record(() -> flush(batch));
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to save a batch of messages", e);
+                fail(batch, e);
+            } finally {
+                fail(batch, new MessagePersistenceBusyException("Message was not saved"));
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Takes the next batch from the queue, waiting for its first message and then
+     * until the batch is full or the flush interval has passed. Stopping the
+     * writer or an interrupt ends the wait early with the messages taken so far,
+     * which are still saved.
+     */
+    private void collect(List<PendingMessage> batch) {
+        try {
+            PendingMessage first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+
+                if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                    break;
+                }
+
+                PendingMessage next = queue.poll(
+                        Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS)), TimeUnit.NANOSECONDS);
+                if (next != null) {
+                    batch.add(next);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Save what is already queued and keep going until the queue has been flushed
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    /**
+     * Completes the futures of the messages that are not done yet with an error.
+     */
+    private static void fail(List<PendingMessage> pendingMessages, RuntimeException e) {
+        for (PendingMessage pendingMessage : pendingMessages) {
+            pendingMessage.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Numbers a batch of messages with one sequence allocation per room and saves
+     * them with one bulk insert, then updates the last message of each room once.
+     * Messages from a failed insert are saved one by one so a single bad message
+     * does not lose the others.
+     */
+    private void flush(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pendingMessage : batch) {
+            messages.add(pendingMessage.message);
+        }
+        batchSizes.record(messages.size());
+        messageSequencer.assign(messages);
+
+        // Messages of deleted rooms were not numbered and are not saved
+        if (messages.removeIf(message -> message.getSequence() == null)) {
+            List<PendingMessage> numberedMessages = new ArrayList<>(messages.size());
+
+            for (PendingMessage pendingMessage : batch) {
+                if (pendingMessage.message.getSequence() == null) {
+                    pendingMessage.future.completeExceptionally(new RoomDeletedException(
+                            "Room " + pendingMessage.message.getRoomId() + " was deleted"));
+                } else {
+                    numberedMessages.add(pendingMessage);
+                }
+            }
+
+            batch = numberedMessages;
+            if (messages.isEmpty()) {
+                return;
+            }
+        }
+
+        try {
+            mongoTemplate.insert(messages, Message.class);
+        } catch (RuntimeException e) {
+            logger.warn("Bulk insert of " + messages.size() + " messages failed, saving them one by one", e);
+            List<PendingMessage> savedMessages = new ArrayList<>();
+
+            for (PendingMessage pendingMessage : batch) {
+                try {
+                    mongoTemplate.save(pendingMessage.message);
+                    savedMessages.add(pendingMessage);
+                } catch (RuntimeException saveException) {
+                    logger.error("Failed to save message " + pendingMessage.message.getId(), saveException);
+                    pendingMessage.future.completeExceptionally(saveException);
+                }
+            }
+
+            batch = savedMessages;
+        }
+
+        // Only the newest message of each room needs to update the room
+        Map<String, Message> lastMessages = new HashMap<>();
+        for (PendingMessage pendingMessage : batch) {
+            Message message = pendingMessage.message;
+            lastMessages.merge(message.getRoomId(), message,
+                    (current, candidate) -> candidate.getSequence() > current.getSequence() ? candidate : current);
+            recentMessageBuffer.append(message);
+        }
+        for (Message message : lastMessages.values()) {
+            roomRepository.updateLastMessage(message);
+        }
+
+        for (PendingMessage pendingMessage : batch) {
+            pendingMessage.future.complete(pendingMessage.message);
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits for the queued messages to be saved.
+     * Messages still queued after the shutdown timeout are failed.
+     */
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+        if (writerThread != null) {
+            queueLock.writeLock().lock();
+            try {
+                running = false;
+            } finally {
+                queueLock.writeLock().unlock();
+            }
+            writerThread.join(shutdownTimeout);
+
+            List<PendingMessage> unsaved = new ArrayList<>();
+            queue.drainTo(unsaved);
+
+            if (!unsaved.isEmpty()) {
+                logger.error(unsaved.size() + " messages were not saved before shutdown");
+                fail(unsaved, new MessagePersistenceBusyException("Message was not saved before shutdown"));
+            }
+        }
+    }
+
+    /** A message waiting to be saved. */
+    private static class PendingMessage {
+
+        private final Message message;
+
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+
+}
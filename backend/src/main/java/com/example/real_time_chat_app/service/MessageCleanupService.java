@@ -0,0 +1,110 @@
+package com.example.real_time_chat_app.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.model.MessageCleanupTask;
+import com.example.real_time_chat_app.repository.MessageCleanupTaskRepository;
+import com.example.real_time_chat_app.repository.MessageSequenceRepository;
+
+/**
+ * Deletes the messages of deleted rooms in the background. One batch of
+ * messages is deleted per interval to limit the load on the database, and the
+ * tasks are stored so that unfinished cleanups continue after a restart. The
+ * room's message sequence is marked deleted first, so no new messages are saved
+ * in the room behind the cleanup.
+ */
+@Service
+public class MessageCleanupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageCleanupService.class);
+
+    @Autowired
+    private MessageCleanupTaskRepository messageCleanupTaskRepository;
+
+    @Autowired
+    private MessageSequenceRepository messageSequenceRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${messages.cleanup.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Schedules the deletion of a room's messages.
+     * 
+     * @param roomId the id of the deleted room
+     */
+    public void scheduleCleanup(String roomId) {
+        messageSequenceRepository.markDeleted(roomId);
+
+        MessageCleanupTask task = new MessageCleanupTask();
+        task.setRoomId(roomId);
+        task.setCompleted(false);
+        task.setCreatedAt(LocalDateTime.now());
+        messageCleanupTaskRepository.save(task);
+    }
+
+    /**
+     * Gets all stored cleanup tasks with their progress.
+     * 
+     * @return a list of cleanup tasks
+     */
+    public List<MessageCleanupTask> getTasks() {
+        return messageCleanupTaskRepository.findAll();
+    }
+
+    /**
+     * Deletes the next batch of messages for the oldest unfinished cleanup task.
+     */
+    @Scheduled(fixedDelayString = "${messages.cleanup.interval:1000}")
+    public void deleteNextBatch() {
+        MessageCleanupTask task = messageCleanupTaskRepository.findFirstByCompletedFalseOrderByCreatedAtAsc()
+                .orElse(null);
+
+        if (task == null) {
+            return;
+        }
+
+        Query batchQuery = new Query(Criteria.where("roomId").is(task.getRoomId()))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        batchQuery.fields().include("_id");
+
+        List<String> messageIds = new ArrayList<>();
+        for (Message message : mongoTemplate.find(batchQuery, Message.class)) {
+            messageIds.add(message.getId());
+        }
+
+        Query taskQuery = new Query(Criteria.where("_id").is(task.getRoomId()));
+
+        if (messageIds.isEmpty()) {
+            mongoTemplate.updateFirst(taskQuery,
+                    new Update().set("completed", true).set("completedAt", LocalDateTime.now()),
+                    MessageCleanupTask.class);
+            logger.info("Finished deleting " + task.getDeletedMessages() + " messages for room " + task.getRoomId());
+            return;
+        }
+
+        long deletedMessages = mongoTemplate.remove(new Query(Criteria.where("_id").in(messageIds)), Message.class)
+                .getDeletedCount();
+        mongoTemplate.updateFirst(taskQuery, new Update().inc("deletedMessages", deletedMessages),
+                MessageCleanupTask.class);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.example.real_time_chat_app.service;
+
+/** When a sent message is broadcast relative to it being saved. */
+public enum MessagePersistenceMode {
+
+    /** Each message is saved on its own before it is broadcast. */
+    SYNC,
+
+    /** Messages are saved in batches and broadcast once their batch is saved. */
+    BATCH,
+
+    /** Messages are broadcast straight away and saved in batches afterwards. */
+    WRITE_BEHIND
+
+}
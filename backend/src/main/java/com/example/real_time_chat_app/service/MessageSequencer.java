@@ -0,0 +1,68 @@
+package com.example.real_time_chat_app.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.MessageSequenceRepository;
+
+/**
+ * Gives messages the next sequence numbers of their rooms right before they are
+ * saved. The numbers of a room are unique and increase in the order messages are
+ * saved, on every instance, so they are the order to rely on instead of ids. A
+ * message whose save fails keeps its number unused, so a room's sequence can
+ * have gaps.
+ */
+@Component
+public class MessageSequencer {
+
+    @Autowired
+    private MessageSequenceRepository messageSequenceRepository;
+
+    /**
+     * Sets the next sequence number of its room on a message, replacing any value
+     * it already had.
+     * 
+     * @param message the message to be saved
+     * @throws RoomDeletedException if the message's room was deleted
+     */
+    public void assign(Message message) {
+        message.setSequence(messageSequenceRepository.allocate(message.getRoomId(), 1));
+    }
+
+    /**
+     * Sets sequence numbers on a batch of messages with one allocation per room.
+     * Messages of the same room are numbered in the order of the list. Messages of
+     * deleted rooms are left without a sequence number, so the rest of the batch
+     * can still be saved.
+     * 
+     * @param messages the messages to be saved
+     */
+    public void assign(List<Message> messages) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Message message : messages) {
+            counts.merge(message.getRoomId(), 1, Integer::sum);
+        }
+
+        Map<String, Long> nextSequences = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            try {
+                nextSequences.put(count.getKey(),
+                        messageSequenceRepository.allocate(count.getKey(), count.getValue()));
+            } catch (RoomDeletedException e) {
+                // Leave the room's messages unnumbered
+            }
+        }
+
+        for (Message message : messages) {
+            Long nextSequence = nextSequences.computeIfPresent(message.getRoomId(), (roomId, next) -> next + 1);
+            message.setSequence(nextSequence != null ? nextSequence - 1 : null);
+        }
+    }
+
+}
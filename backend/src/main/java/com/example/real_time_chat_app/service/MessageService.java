@@ -1,12 +1,25 @@
 package com.example.real_time_chat_app.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import com.example.real_time_chat_app.dto.MessagePageDTO;
+import com.example.real_time_chat_app.dto.ResyncCursorDTO;
+import com.example.real_time_chat_app.dto.RoomResyncDTO;
 import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.model.Room;
 import com.example.real_time_chat_app.repository.MessageRepository;
+import com.example.real_time_chat_app.repository.RoomRepository;
 
 /** Handles message related functions. */
 @Service
@@ -15,23 +28,250 @@ public class MessageService {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MessageSequencer messageSequencer;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Value("${messages.persistence.mode:SYNC}")
+    private MessagePersistenceMode persistenceMode;
+
+    @Value("${messages.history.default-limit:50}")
+    private int defaultHistoryLimit;
+
+    @Value("${messages.history.max-limit:200}")
+    private int maxHistoryLimit;
+
+    @Value("${messages.history.legacy-limit:500}")
+    private int legacyHistoryLimit;
+
+    @Value("${messages.resync.limit:100}")
+    private int resyncLimit;
+
     /**
-     * Creates a new message.
+     * Creates a new message and updates the last message summary of its room.
+     * Depending on the persistence mode the message is saved before this returns,
+     * with its batch before this returns, or in the background afterwards. The
+     * message's id is always set before this returns. Its sequence number is set
+     * when it is saved, so a message saved in the background has none yet. It is
+     * only added to the recent messages once it is saved.
      * 
      * @param message the message to be created in the database
-     * @return a message entity
+     * @return a message entity with its id set
      */
     public Message createMessage(Message message) {
-        return messageRepository.save(message);
+        switch (persistenceMode) {
+            case BATCH:
+                try {
+                    return messageBatchWriter.write(message).join();
+                } catch (CompletionException e) {
+                    // Rethrow the cause so the controller's exception handlers see it
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            case WRITE_BEHIND:
+                messageBatchWriter.write(message);
+                return message;
+            default:
+                messageSequencer.assign(message);
+                Message savedMessage = messageRepository.insert(message);
+                roomRepository.updateLastMessage(savedMessage);
+                recentMessageBuffer.append(savedMessage);
+                return savedMessage;
+        }
     }
 
     /**
-     * Retrieves the messages in a specific room.
+     * Sets a message as the last message of a loaded room if it is newer than the
+     * room's last message, for when the room was read before the message was
+     * saved. A message without a sequence number is not saved yet, so it is the
+     * newest.
+     * 
+     * @param room    the room
+     * @param message the message
+     */
+    public void setLastMessage(Room room, Message message) {
+        if (message.getSequence() == null || room.getLastMessageSequence() == null
+                || room.getLastMessageSequence() < message.getSequence()) {
+            room.setLastMessageId(message.getId());
+            room.setLastMessageSequence(message.getSequence());
+            room.setLastMessage(message.getContent());
+            room.setLastMessageSenderId(message.getSenderId());
+            room.setLastMessageSenderFirstName(message.getSenderFirstName());
+        }
+    }
+
+    /**
+     * Retrieves the most recent messages in a specific room, capped at the legacy
+     * history limit.
      * 
      * @param roomId the room's id
-     * @return a list of messages
+     * @return a list of messages ordered from oldest to newest
      */
     public List<Message> getMessagesByRoomId(String roomId) {
-        return messageRepository.findByRoomId(roomId);
+        List<Message> bufferedMessages = recentMessageBuffer.getOlder(roomId, null, legacyHistoryLimit);
+        List<Message> messages = new ArrayList<>(bufferedMessages != null ? bufferedMessages
+                : messageRepository.findByRoomIdOrderBySequenceDesc(roomId, PageRequest.of(0, legacyHistoryLimit)));
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Retrieves a page of a room's message history, newest first, in sequence
+     * order. At most one of the cursors should be set; without a cursor the newest
+     * messages are returned. Pages within the room's recent messages are read from
+     * memory.
+     * 
+     * @param roomId       the room's id
+     * @param beforeCursor returns messages older than this cursor
+     * @param afterCursor  returns messages newer than this cursor
+     * @param limit        the maximum number of messages to return
+     * @return a page of messages with the cursors for the adjacent pages
+     * @throws IllegalArgumentException if a cursor is malformed
+     */
+    public MessagePageDTO getMessagePage(String roomId, String beforeCursor, String afterCursor, Integer limit) {
+        int pageSize = limit == null ? defaultHistoryLimit : Math.max(1, Math.min(limit, maxHistoryLimit));
+
+        // Fetch one extra message to know if there is another page
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<Message> messages;
+        boolean hasOlder;
+
+        if (afterCursor != null) {
+            long afterSequence = decodeCursor(afterCursor);
+            List<Message> bufferedMessages = recentMessageBuffer.getNewer(roomId, afterSequence, pageSize + 1);
+            messages = new ArrayList<>(bufferedMessages != null ? bufferedMessages
+                    : messageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc(roomId, afterSequence,
+                            pageRequest));
+            if (messages.size() > pageSize) {
+                messages = messages.subList(0, pageSize);
+            }
+            Collections.reverse(messages);
+            hasOlder = true;
+        } else {
+            Long beforeSequence = beforeCursor != null ? decodeCursor(beforeCursor) : null;
+            messages = recentMessageBuffer.getOlder(roomId, beforeSequence, pageSize + 1);
+
+            if (messages == null) {
+                if (beforeSequence != null) {
+                    messages = messageRepository.findByRoomIdAndSequenceLessThanOrderBySequenceDesc(roomId,
+                            beforeSequence, pageRequest);
+                } else {
+                    messages = messageRepository.findByRoomIdOrderBySequenceDesc(roomId, pageRequest);
+                }
+            }
+            hasOlder = messages.size() > pageSize;
+            if (hasOlder) {
+                messages = messages.subList(0, pageSize);
+            }
+        }
+
+        MessagePageDTO page = new MessagePageDTO();
+        page.setMessages(messages);
+
+        if (!messages.isEmpty()) {
+            page.setPreviousCursor(encodeCursor(messages.get(0).getSequence()));
+            if (hasOlder) {
+                page.setNextCursor(encodeCursor(messages.get(messages.size() - 1).getSequence()));
+            }
+        } else if (afterCursor != null) {
+            // Nothing newer yet, so the client can keep polling with the same cursor
+            page.setPreviousCursor(afterCursor);
+        }
+
+        return page;
+    }
+
+    /**
+     * Retrieves the messages a client missed in a room since the last message it
+     * saw, up to the resync limit, in sequence order. A cursor with only a message
+     * id is resolved to that message's sequence number first. Rooms whose recent
+     * messages are in memory need no query, and the rest need one index range
+     * scan. If the message of the cursor no longer exists, the newest messages
+     * are returned with more to fetch.
+     * 
+     * @param roomId the room's id
+     * @param cursor the last message the client saw, or null to get the newest
+     *               messages
+     * @return the missed messages ordered from oldest to newest
+     * @throws IllegalArgumentException if the message id is malformed
+     */
+    public RoomResyncDTO getMissedMessages(String roomId, ResyncCursorDTO cursor) {
+        RoomResyncDTO resync = new RoomResyncDTO();
+        resync.setRoomId(roomId);
+
+        String lastMessageId = cursor != null ? cursor.getLastMessageId() : null;
+        Long lastSequence = cursor != null ? cursor.getLastSequence() : null;
+
+        // Without a last message the client gets the newest messages instead
+        if (lastMessageId == null && lastSequence == null) {
+            List<Message> newest = getMessagesByRoomId(roomId);
+            resync.setMessages(new ArrayList<>(newest.subList(Math.max(0, newest.size() - resyncLimit),
+                    newest.size())));
+            return resync;
+        }
+
+        if (lastSequence == null) {
+            if (!ObjectId.isValid(lastMessageId)) {
+                throw new IllegalArgumentException("Invalid message id");
+            }
+            lastSequence = messageRepository.findById(lastMessageId)
+                    .filter(message -> roomId.equals(message.getRoomId()))
+                    .map(Message::getSequence)
+                    .orElse(null);
+
+            if (lastSequence == null) {
+                RoomResyncDTO newest = getMissedMessages(roomId, null);
+                newest.setHasMore(true);
+                return newest;
+            }
+        }
+
+        // Fetch one extra message to know if more were missed
+        List<Message> messages = recentMessageBuffer.getNewer(roomId, lastSequence, resyncLimit + 1);
+
+        if (messages == null) {
+            messages = messageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc(roomId, lastSequence,
+                    PageRequest.of(0, resyncLimit + 1));
+        }
+
+        resync.setHasMore(messages.size() > resyncLimit);
+        resync.setMessages(new ArrayList<>(resync.isHasMore() ? messages.subList(0, resyncLimit) : messages));
+        return resync;
+    }
+
+    /**
+     * Encodes a message's sequence number as an opaque cursor token.
+     * 
+     * @param sequence the message's sequence number
+     * @return the cursor token
+     */
+    private String encodeCursor(Long sequence) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(sequence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor token back to the sequence number it points to.
+     * 
+     * @param cursor the cursor token
+     * @return the message's sequence number
+     * @throws IllegalArgumentException if the cursor is not a valid token
+     */
+    private long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
     }
 }
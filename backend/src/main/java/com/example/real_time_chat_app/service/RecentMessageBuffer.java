@@ -0,0 +1,334 @@
+package com.example.real_time_chat_app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Keeps the most recent messages of active rooms in memory so the newest part
+ * of a room's history can be read without a query. Each room has a fixed
+ * capacity ring buffer that is loaded on the first history read and appended
+ * to when a message is created. Rooms are evicted when the estimated size of
+ * all buffers exceeds the memory budget, least recently used first.
+ *
+ * Messages created by other instances are not appended here. They show up as
+ * gaps in the sequence numbers, so a read is only served from the buffer when
+ * the sequence numbers it returns have no gaps. Newer messages from other
+ * instances leave no gap, so each buffer is also reloaded after a fixed time.
+ * Sequence numbers of failed saves also leave gaps, and reads across them need
+ * a query.
+ */
+@Component
+public class RecentMessageBuffer {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messages.buffer.capacity:100}")
+    private int capacity;
+
+    @Value("${messages.buffer.memory-budget:67108864}")
+    private long memoryBudget;
+
+    @Value("${messages.buffer.expiration:60}")
+    private long expiration;
+
+    // Replaced by tests to control the expiration
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Cache<String, RoomBuffer> buffers;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    @PostConstruct
+    private void init() {
+        buffers = Caffeine.newBuilder()
+                .maximumWeight(memoryBudget)
+                .weigher((String roomId, RoomBuffer buffer) -> buffer.getWeight())
+                .expireAfter(new Expiry<String, RoomBuffer>() {
+                    @Override
+                    public long expireAfterCreate(String roomId, RoomBuffer buffer, long currentTime) {
+                        return TimeUnit.SECONDS.toNanos(expiration);
+                    }
+
+                    // Appends replace the buffer, which must not extend its life
+                    @Override
+                    public long expireAfterUpdate(String roomId, RoomBuffer buffer, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String roomId, RoomBuffer buffer, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "recentMessages");
+        hits = Counter.builder("chat.messages.buffer.reads")
+                .description("History reads served from the recent message buffer")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("chat.messages.buffer.reads")
+                .description("History reads that needed a query")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.buffer.bytes", this,
+                buffer -> buffer.buffers.policy().eviction().get().weightedSize().orElse(0))
+                .description("Estimated memory used by the recent message buffers")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a newly saved message to its room's buffer if the room has one.
+     * 
+     * @param message the saved message with its sequence number set
+     */
+    public void append(Message message) {
+        if (message.getSequence() == null) {
+            return;
+        }
+
+        // Replacing the buffer with itself has the cache weigh it again
+        buffers.asMap().computeIfPresent(message.getRoomId(), (roomId, buffer) -> {
+            buffer.add(message);
+            return buffer;
+        });
+    }
+
+    /**
+     * Gets the newest messages of a room that are older than a message, loading
+     * the room's buffer if it has none.
+     * 
+     * @param roomId         the room's id
+     * @param beforeSequence only returns messages with a lower sequence number, or
+     *                       all if null
+     * @param count          the number of messages wanted
+     * @return the messages newest first, or null if the buffer does not hold them
+     */
+    public List<Message> getOlder(String roomId, Long beforeSequence, int count) {
+        return read(roomId, buffer -> buffer.getOlder(beforeSequence, count));
+    }
+
+    /**
+     * Gets the oldest messages of a room that are newer than a message, loading
+     * the room's buffer if it has none.
+     * 
+     * @param roomId        the room's id
+     * @param afterSequence only returns messages with a higher sequence number
+     * @param count         the number of messages wanted
+     * @return the messages oldest first, or null if the buffer does not hold them
+     */
+    public List<Message> getNewer(String roomId, long afterSequence, int count) {
+        return read(roomId, buffer -> buffer.getNewer(afterSequence, count));
+    }
+
+    /**
+     * Removes a room's buffer after its messages were deleted.
+     * 
+     * @param roomId the room's id
+     */
+    public void evict(String roomId) {
+        buffers.invalidate(roomId);
+    }
+
+    /**
+     * Reads from a room's buffer, loading the newest messages on a miss. Messages
+     * appended while the buffer is loading wait for it, and any message already
+     * included by the query is ignored. A read counts as a hit when it needed no
+     * query at all.
+     */
+    private List<Message> read(String roomId, Function<RoomBuffer, List<Message>> reader) {
+        RoomBuffer buffer = buffers.getIfPresent(roomId);
+        boolean loaded = buffer == null;
+
+        if (loaded) {
+            buffer = buffers.get(roomId, this::load);
+        }
+
+        List<Message> messages = reader.apply(buffer);
+        (messages != null && !loaded ? hits : misses).increment();
+        return messages;
+    }
+
+    /**
+     * Loads the newest messages of a room into a new buffer. Only messages with a
+     * sequence number are loaded, like every history query.
+     */
+    private RoomBuffer load(String roomId) {
+        List<Message> newest = messageRepository.findByRoomIdOrderBySequenceDesc(roomId,
+                PageRequest.of(0, capacity));
+        RoomBuffer buffer = new RoomBuffer(capacity, newest.size() < capacity);
+
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            buffer.add(newest.get(i));
+        }
+        return buffer;
+    }
+
+    /** A ring buffer of a room's newest messages ordered by sequence number. */
+    static class RoomBuffer {
+
+        // Rough size of a message without its strings
+        private static final int MESSAGE_OVERHEAD = 200;
+
+        private final Message[] messages;
+
+        private int head;
+
+        private int size;
+
+        // True while the buffer holds every message of the room
+        private boolean complete;
+
+        private long bytes;
+
+        RoomBuffer(int capacity, boolean complete) {
+            this.messages = new Message[capacity];
+            this.complete = complete;
+        }
+
+        /**
+         * Adds a message in sequence order, dropping the oldest message when full.
+         * Messages usually arrive in order so this rarely moves any others.
+         */
+        synchronized void add(Message message) {
+            int position = size;
+
+            while (position > 0) {
+                int comparison = Long.compare(get(position - 1).getSequence(), message.getSequence());
+                if (comparison == 0) {
+                    return;
+                } else if (comparison < 0) {
+                    break;
+                }
+                position--;
+            }
+
+            if (size == messages.length) {
+                if (position == 0) {
+                    return;
+                }
+                bytes -= estimateSize(get(0));
+                messages[head] = null;
+                head = (head + 1) % messages.length;
+                size--;
+                position--;
+                complete = false;
+            }
+
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, message);
+            size++;
+            bytes += estimateSize(message);
+        }
+
+        synchronized List<Message> getOlder(Long beforeSequence, int count) {
+            int end = size;
+
+            if (beforeSequence != null) {
+                while (end > 0 && get(end - 1).getSequence() >= beforeSequence) {
+                    end--;
+                }
+                // The cursor is older than everything buffered
+                if (end == 0 && !complete) {
+                    return null;
+                }
+            }
+
+            if (end < count && !complete) {
+                return null;
+            }
+
+            List<Message> result = new ArrayList<>(Math.min(count, end));
+            for (int i = end - 1; i >= 0 && result.size() < count; i--) {
+                long expected = result.isEmpty()
+                        ? beforeSequence != null ? beforeSequence - 1 : get(i).getSequence()
+                        : result.get(result.size() - 1).getSequence() - 1;
+                // A gap may be a message from another instance
+                if (get(i).getSequence() != expected) {
+                    return null;
+                }
+                result.add(get(i));
+            }
+            return result;
+        }
+
+        synchronized List<Message> getNewer(long afterSequence, int count) {
+            // Newer messages may be missing if the cursor is older than the buffer
+            if (!complete && (size == 0 || get(0).getSequence() > afterSequence)) {
+                return null;
+            }
+
+            int start = 0;
+            while (start < size && get(start).getSequence() <= afterSequence) {
+                start++;
+            }
+
+            List<Message> result = new ArrayList<>();
+            long expected = afterSequence + 1;
+            for (int i = start; i < size && result.size() < count; i++) {
+                if (get(i).getSequence() != expected++) {
+                    return null;
+                }
+                result.add(get(i));
+            }
+            return result;
+        }
+
+        synchronized int getWeight() {
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+
+        private Message get(int index) {
+            return messages[(head + index) % messages.length];
+        }
+
+        private void set(int index, Message message) {
+            messages[(head + index) % messages.length] = message;
+        }
+
+        private static long estimateSize(Message message) {
+            return MESSAGE_OVERHEAD + 2L * (length(message.getId()) + length(message.getContent())
+                    + length(message.getSenderId()) + length(message.getSenderEmail())
+                    + length(message.getSenderFirstName()) + length(message.getSenderLastName())
+                    + length(message.getRoomId()) + length(message.getType()));
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+
+}
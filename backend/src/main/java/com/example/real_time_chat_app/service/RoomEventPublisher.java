@@ -0,0 +1,158 @@
+package com.example.real_time_chat_app.service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.dto.RoomUserDTO;
+import com.example.real_time_chat_app.dto.UserRoomDTO;
+import com.example.real_time_chat_app.model.Room;
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.RoomRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Sends room and user events to the user destinations of the users they affect
+ * instead of broadcasting them to every connected client. Each user receives an
+ * event once on every one of their sessions.
+ */
+@Component
+public class RoomEventPublisher {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private SimpUserRegistry simpUserRegistry;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter targetedFrames;
+
+    private Counter allSessionFrames;
+
+    @PostConstruct
+    private void init() {
+        targetedFrames = Counter.builder("chat.room.updates.frames")
+                .description("Room update frames delivered to the sessions of room members")
+                .tag("delivery", "targeted")
+                .register(meterRegistry);
+        // Every client used to subscribe to the room broadcast when it connected, so
+        // a broadcast reached every connected session
+        allSessionFrames = Counter.builder("chat.room.updates.frames")
+                .description("Room update frames a broadcast to every connected session would have delivered")
+                .tag("delivery", "all-sessions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends a room's updated name or last message to the room's members.
+     *
+     * @param room     the room
+     * @param userRoom the user room dto to send
+     */
+    public void sendRoomUpdate(Room room, UserRoomDTO userRoom) {
+        allSessionFrames.increment(countSessions());
+        targetedFrames.increment(sendToUsers(room.getUsers(), "/queue/rooms", userRoom));
+    }
+
+    /**
+     * Sends a deleted room to the users who were in it. The room's users need to
+     * be read before it is deleted.
+     *
+     * @param room     the deleted room
+     * @param userRoom the user room dto to send
+     */
+    public void sendRoomDeletion(Room room, UserRoomDTO userRoom) {
+        sendToUsers(room.getUsers(), "/queue/room/delete", userRoom);
+    }
+
+    /**
+     * Sends a user's updated profile to the user and every user who shares a room
+     * with them. The user's open sessions are still registered under the email
+     * they connected with, so the update is also sent to their previous email if
+     * it changed.
+     *
+     * @param user          the updated user
+     * @param previousEmail the user's email before the update
+     * @param profile       the profile information to send
+     */
+    public void sendUserProfileUpdate(User user, String previousEmail, RoomUserDTO profile) {
+        Set<String> userIds = new LinkedHashSet<>();
+        userIds.add(user.getId());
+
+        if (user.getRooms() != null && !user.getRooms().isEmpty()) {
+            for (Room room : roomRepository.findAllById(user.getRooms())) {
+                if (room.getUsers() != null) {
+                    userIds.addAll(room.getUsers());
+                }
+            }
+        }
+
+        sendToUsers(userIds, "/queue/user/update", profile);
+
+        if (previousEmail != null && !previousEmail.equals(user.getEmail())
+                && simpUserRegistry.getUser(previousEmail) != null) {
+            messagingTemplate.convertAndSendToUser(previousEmail, "/queue/user/update", profile);
+        }
+    }
+
+    /**
+     * Counts the connected sessions of all users.
+     *
+     * @return the number of connected sessions
+     */
+    private int countSessions() {
+        int sessions = 0;
+        for (SimpUser simpUser : simpUserRegistry.getUsers()) {
+            sessions += simpUser.getSessions().size();
+        }
+        return sessions;
+    }
+
+    /**
+     * Sends a payload to the user destination of each connected user.
+     *
+     * @param userIds     the user ids
+     * @param destination the user destination
+     * @param payload     the payload to send
+     * @return the number of sessions the payload was sent to
+     */
+    private int sendToUsers(Collection<String> userIds, String destination, Object payload) {
+        if (userIds == null || userIds.isEmpty()) {
+            return 0;
+        }
+
+        int sessions = 0;
+        Collection<UserProfileCache.Profile> profiles = userProfileCache.getProfiles(new LinkedHashSet<>(userIds))
+                .values();
+
+        for (UserProfileCache.Profile profile : profiles) {
+            SimpUser simpUser = simpUserRegistry.getUser(profile.getEmail());
+
+            // Users without a session have nothing to deliver to
+            if (simpUser != null) {
+                messagingTemplate.convertAndSendToUser(profile.getEmail(), destination, payload);
+                sessions += simpUser.getSessions().size();
+            }
+        }
+        return sessions;
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.example.real_time_chat_app.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caches the room ids of each user by email so that room membership checks do
+ * not need to load the user from the database. A change to a user's rooms marks
+ * the user as changed, and a cached membership loaded before the user's last
+ * change is loaded again. Only loads of the changed user are affected. Entries
+ * also expire after a while in case another instance changed the membership.
+ */
+@Component
+public class RoomMembershipCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${membership.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${membership.cache.expiration:600}")
+    private long expiration;
+
+    private Cache<String, Membership> membershipsByEmail;
+
+    // When each user's rooms last changed, by user id
+    private Cache<String, Long> changes;
+
+    // Orders loads and changes, a load started at or after a change includes it
+    private final AtomicLong clock = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        membershipsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expiration))
+                .recordStats()
+                .build();
+
+        // Kept longer than the memberships, so a membership never outlives a newer change
+        changes = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expiration * 2))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, membershipsByEmail, "roomMembership");
+    }
+
+    /**
+     * Checks if a user is in a room, loading the user's rooms on a cache miss or
+     * if they changed since they were cached.
+     *
+     * @param email  the user's email
+     * @param roomId the room id
+     * @return true if the user is in the room
+     */
+    public boolean isMember(String email, String roomId) {
+        Membership membership = membershipsByEmail.getIfPresent(email);
+
+        if (membership != null && changedSince(membership.userId, membership.loadedAt)) {
+            membershipsByEmail.asMap().remove(email, membership);
+            membership = null;
+        }
+
+        if (membership == null) {
+            long loadedAt = clock.get();
+            Optional<User> user = userRepository.findByEmail(email);
+
+            if (user.isEmpty()) {
+                return false;
+            }
+
+            membership = new Membership(user.get().getId(), user.get().getRooms(), loadedAt);
+
+            // A change during the load may be missing from it
+            if (!changedSince(membership.userId, loadedAt)) {
+                membershipsByEmail.put(email, membership);
+            }
+        }
+
+        return membership.roomIds.contains(roomId);
+    }
+
+    /**
+     * Marks a user's rooms as changed after a room was added.
+     *
+     * @param userId the user id
+     * @param roomId the room id
+     */
+    public void addRoom(String userId, String roomId) {
+        markChanged(userId);
+    }
+
+    /**
+     * Marks a user's rooms as changed after a room was removed.
+     *
+     * @param userId the user id
+     * @param roomId the room id
+     */
+    public void removeRoom(String userId, String roomId) {
+        markChanged(userId);
+    }
+
+    /**
+     * Marks the rooms of several users as changed, such as when a room is deleted.
+     *
+     * @param userIds the user ids
+     * @param roomId  the room id
+     */
+    public void removeRoom(Collection<String> userIds, String roomId) {
+        for (String userId : userIds) {
+            markChanged(userId);
+        }
+    }
+
+    /**
+     * Marks a user as changed, such as when their email changes.
+     *
+     * @param userId the user id
+     */
+    public void evictUser(String userId) {
+        markChanged(userId);
+    }
+
+    /**
+     * Records a change to a user after it was saved, so memberships loaded before
+     * it are not used.
+     */
+    private void markChanged(String userId) {
+        changes.put(userId, clock.incrementAndGet());
+    }
+
+    /**
+     * Checks if a user changed after a point in time of the clock.
+     */
+    private boolean changedSince(String userId, long time) {
+        Long changedAt = changes.getIfPresent(userId);
+        return changedAt != null && changedAt > time;
+    }
+
+    /** The rooms of a user, stored as an immutable set. */
+    private static class Membership {
+
+        private final String userId;
+
+        private final Set<String> roomIds;
+
+        // The clock time before the rooms were read
+        private final long loadedAt;
+
+        Membership(String userId, Collection<String> roomIds, long loadedAt) {
+            this.userId = userId;
+            this.roomIds = roomIds == null ? Set.of() : Set.copyOf(roomIds);
+            this.loadedAt = loadedAt;
+        }
+    }
+
+}
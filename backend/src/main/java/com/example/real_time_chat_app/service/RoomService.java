@@ -1,14 +1,18 @@
 package com.example.real_time_chat_app.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.real_time_chat_app.dto.RoomUserDTO;
 import com.example.real_time_chat_app.dto.UserRoomDTO;
-import com.example.real_time_chat_app.model.Message;
 import com.example.real_time_chat_app.model.Room;
 import com.example.real_time_chat_app.model.User;
 import com.example.real_time_chat_app.repository.RoomRepository;
@@ -18,6 +22,10 @@ import com.example.real_time_chat_app.repository.UserRepository;
 @Service
 public class RoomService {
 
+    private static final int MAX_ROOM_USERS = 50;
+
+    private static final int MAX_USER_ROOMS = 50;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -25,19 +33,30 @@ public class RoomService {
     private RoomRepository roomRepository;
 
     @Autowired
-    private MessageService messageService;
+    private UserService userService;
+
+    @Autowired
+    private RoomMembershipCache roomMembershipCache;
 
     @Autowired
-    private UserService userService;
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private MessageCleanupService messageCleanupService;
+
+    @Autowired
+    private RecentMessageBuffer recentMessageBuffer;
 
     /**
-     * Creates a new room.
+     * Creates a new room. The room is removed again if it can not be added to the
+     * user, so a user never owns a room they can not see.
      * 
      * @param roomName  the new room name
      * @param userId    the user id of the user creating the room
      * @param userEmail the user email of the user creating the room to set the
      *                  owner
-     * @return a new room
+     * @return a new room, or null if the user does not exist or is in too many
+     *         rooms
      */
     public Room createRoom(String roomName, String userId, String userEmail) {
         Room savedRoom = new Room();
@@ -47,21 +66,20 @@ public class RoomService {
         savedRoom.setOwner(userEmail);
         roomRepository.save(savedRoom);
 
-        addUserToRoom(savedRoom.getId(), userId);
-        addRoomToUser(savedRoom.getId(), userId);
+        if (!addRoomToUser(savedRoom.getId(), userId)) {
+            roomRepository.deleteById(savedRoom.getId());
+            return null;
+        }
+
+        if (!addUserToRoom(savedRoom.getId(), userId)) {
+            removeUserFromRoom(savedRoom.getId(), userId);
+            roomRepository.deleteById(savedRoom.getId());
+            return null;
+        }
 
         return savedRoom;
     }
 
-    /**
-     * Saves the last message in a room.
-     * 
-     * @param room the room to be saved with the new message
-     */
-    public void saveRoomLastMessage(Room room) {
-        roomRepository.save(room);
-    }
-
     /**
      * Gets a room with a specific id.
      * 
@@ -73,7 +91,8 @@ public class RoomService {
     }
 
     /**
-     * Deletes a room and removes the room from all users that are joined.
+     * Deletes a room, removes the room from all users that are joined and
+     * schedules the deletion of its messages.
      * 
      * @param roomId the room id
      * @param email  the email of the user to check if that is the owner of the room
@@ -81,17 +100,16 @@ public class RoomService {
      *         not match the provided email
      */
     public boolean deleteRoom(String roomId, String email) {
-        List<User> users = userService.getAllUsers();
         Room room = getRoomById(roomId);
 
-        if (room.getOwner().equals(email)) {
-            for (User user : users) {
-                if (user.getRooms() != null) {
-                    user.getRooms().removeIf(userRoomId -> userRoomId.equals(roomId));
-                }
-                userRepository.save(user);
+        if (room != null && room.getOwner().equals(email)) {
+            if (room.getUsers() != null && !room.getUsers().isEmpty()) {
+                userRepository.removeRoomFromUsers(room.getUsers(), roomId);
+                roomMembershipCache.removeRoom(room.getUsers(), roomId);
             }
             roomRepository.deleteById(roomId);
+            recentMessageBuffer.evict(roomId);
+            messageCleanupService.scheduleCleanup(roomId);
             return true;
         } else {
             return false;
@@ -103,28 +121,11 @@ public class RoomService {
      * 
      * @param roomId the room id
      * @param userId the user id
+     * @return true if the user is in the room, false if the room does not exist
+     *         or is full
      */
-    public void addUserToRoom(String roomId, String userId) {
-        Room room = getRoomById(roomId);
-        List<String> newUserList = new ArrayList<>();
-        List<String> newAllUserList = new ArrayList<>();
-
-        if (room != null) {
-            if (room.getUsers() != null && room.getAllUsers() != null) {
-                newUserList = room.getUsers();
-                newAllUserList = room.getAllUsers();
-            }
-            newUserList.add(userId);
-
-            // Avoid adding duplicate users to this list
-            if (!newAllUserList.contains(userId)) {
-                newAllUserList.add(userId);
-            }
-
-            room.setUsers(newUserList);
-            room.setAllUsers(newAllUserList);
-            roomRepository.save(room);
-        }
+    public boolean addUserToRoom(String roomId, String userId) {
+        return roomRepository.addUser(roomId, userId, MAX_ROOM_USERS);
     }
 
     /**
@@ -135,18 +136,11 @@ public class RoomService {
      * @return true if the user was removed, false if not
      */
     public boolean removeUserFromRoom(String roomId, String userId) {
-        Room room = getRoomById(roomId);
-        User user = userService.findById(userId).get();
-
-        if (room != null && user != null) {
-            room.getUsers().remove(userId);
-            user.getRooms().remove(roomId);
-            roomRepository.save(room);
-            userRepository.save(user);
-            return true;
-        }
+        boolean removedFromRoom = roomRepository.removeUser(roomId, userId);
+        boolean removedFromUser = userRepository.removeRoom(userId, roomId);
+        roomMembershipCache.removeRoom(userId, roomId);
 
-        return false;
+        return removedFromRoom && removedFromUser;
     }
 
     /**
@@ -156,23 +150,13 @@ public class RoomService {
      * @return a list of the users in the room
      */
     public List<RoomUserDTO> getUsers(String roomId) {
-        List<String> users = new ArrayList<>();
-        List<RoomUserDTO> roomUsers = new ArrayList<RoomUserDTO>();
+        Room room = getRoomById(roomId);
 
-        if (getRoomById(roomId).getUsers() != null) {
-            users = getRoomById(roomId).getUsers();
-
-            for (String userId : users) {
-                User user = userService.findById(userId).get();
-                RoomUserDTO newRoomUser = new RoomUserDTO();
-                newRoomUser.setId(userId);
-                newRoomUser.setFirstName(user.getFirstName());
-                newRoomUser.setLastName(user.getLastName());
-                newRoomUser.setProfilePictureUrl(user.getProfilePictureURL());
-                roomUsers.add(newRoomUser);
-            }
+        if (room != null) {
+            return getRoomUsers(room.getUsers());
+        } else {
+            return new ArrayList<>();
         }
-        return roomUsers;
     }
 
     /**
@@ -182,22 +166,38 @@ public class RoomService {
      * @return a list of the room users
      */
     public List<RoomUserDTO> getAllUsers(String roomId) {
-        List<String> users = new ArrayList<>();
-        List<RoomUserDTO> roomUsers = new ArrayList<RoomUserDTO>();
+        Room room = getRoomById(roomId);
+
+        if (room != null && room.getUsers() != null) {
+            return getRoomUsers(room.getAllUsers());
+        } else {
+            return new ArrayList<>();
+        }
+    }
 
-        if (getRoomById(roomId).getUsers() != null) {
-            users = getRoomById(roomId).getAllUsers();
+    /**
+     * Creates the room users for a list of user ids from their cached profiles.
+     * 
+     * @param userIds the user ids
+     * @return a list of the room users
+     */
+    private List<RoomUserDTO> getRoomUsers(List<String> userIds) {
+        List<RoomUserDTO> roomUsers = new ArrayList<RoomUserDTO>();
 
-            for (String userId : users) {
-                User user = userService.findById(userId).get();
-                RoomUserDTO newRoomUser = new RoomUserDTO();
+        if (userIds != null) {
+            Map<String, UserProfileCache.Profile> profiles = userProfileCache.getProfiles(userIds);
 
-                newRoomUser.setId(userId);
-                newRoomUser.setFirstName(user.getFirstName());
-                newRoomUser.setLastName(user.getLastName());
-                newRoomUser.setProfilePictureUrl(user.getProfilePictureURL());
+            for (String userId : userIds) {
+                UserProfileCache.Profile profile = profiles.get(userId);
 
-                roomUsers.add(newRoomUser);
+                if (profile != null) {
+                    RoomUserDTO newRoomUser = new RoomUserDTO();
+                    newRoomUser.setId(userId);
+                    newRoomUser.setFirstName(profile.getFirstName());
+                    newRoomUser.setLastName(profile.getLastName());
+                    newRoomUser.setProfilePictureUrl(profile.getProfilePictureURL());
+                    roomUsers.add(newRoomUser);
+                }
             }
         }
         return roomUsers;
@@ -210,34 +210,56 @@ public class RoomService {
      * @return a list of the user's rooms
      */
     public List<UserRoomDTO> getUserRooms(String userId) {
-        List<String> rooms = new ArrayList<>();
+        Optional<User> user = userService.getUserById(userId);
+
+        if (user.isPresent()) {
+            return getUserRooms(user.get());
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Gets a user's rooms that they are currently joined in, loading the rooms in
+     * one query and the last message senders from the profile cache.
+     * 
+     * @param user the user
+     * @return a list of the user's rooms
+     */
+    public List<UserRoomDTO> getUserRooms(User user) {
         List<UserRoomDTO> userRooms = new ArrayList<UserRoomDTO>();
 
-        if (userService.getUserById(userId).get().getRooms() != null) {
-            rooms = userService.getUserById(userId).get().getRooms();
+        if (user.getRooms() == null || user.getRooms().isEmpty()) {
+            return userRooms;
+        }
+
+        Map<String, Room> rooms = new HashMap<>();
+        Set<String> senderIds = new HashSet<>();
+
+        for (Room room : roomRepository.findAllById(user.getRooms())) {
+            rooms.put(room.getId(), room);
+            if (room.getLastMessageSenderId() != null) {
+                senderIds.add(room.getLastMessageSenderId());
+            }
+        }
+
+        Map<String, UserProfileCache.Profile> senders = userProfileCache.getProfiles(senderIds);
 
-            for (String roomId : rooms) {
-                Room room = getRoomById(roomId);
-                UserRoomDTO newUserRoom = getUserRoom(roomId);
-                User sender = new User();
+        // Keep the order of the user's rooms
+        for (String roomId : user.getRooms()) {
+            Room room = rooms.get(roomId);
 
-                newUserRoom.setId(roomId);
-                newUserRoom.setName(room.getName());
-                newUserRoom.setOwner(room.getOwner());
+            if (room != null) {
+                UserRoomDTO newUserRoom = getUserRoom(room);
+                UserProfileCache.Profile sender = senders.get(room.getLastMessageSenderId());
 
-                if (room.getLastMessageSenderId() != null) {
-                    sender = userService.getUserById(room.getLastMessageSenderId()).get();
+                if (sender != null) {
                     newUserRoom.setLastMessageSenderFirstName(sender.getFirstName());
                 }
-
-                newUserRoom.setLastMessageSenderId(room.getLastMessageSenderId());
-                newUserRoom.setLastMessage(room.getLastMessage());
                 userRooms.add(newUserRoom);
-
             }
         }
         return userRooms;
-
     }
 
     /**
@@ -250,43 +272,29 @@ public class RoomService {
         Room room = getRoomById(roomId);
 
         if (room != null) {
-            UserRoomDTO userRoom = new UserRoomDTO();
-            userRoom.setId(roomId);
-            userRoom.setName(room.getName());
-            userRoom.setOwner(room.getOwner());
-
-            String[] lastMessageInformation = getRoomLastMessageInformation(roomId);
-            if (lastMessageInformation.length > 0) {
-                userRoom.setLastMessage(lastMessageInformation[0]);
-                userRoom.setLastMessageSenderId(lastMessageInformation[1]);
-                userRoom.setLastMessageSenderFirstName(lastMessageInformation[2]);
-            }
-
-            return userRoom;
+            return getUserRoom(room);
         } else {
             return null;
         }
     }
 
     /**
-     * Gets the information for the last message sent in a room.
+     * Creates a user's room from a room and its last message summary.
      * 
-     * @param roomId the room id
-     * @return a string array with message information or an empty string array if
-     *         there are no messages in the room
+     * @param room the room
+     * @return an object of the user's room
      */
-    public String[] getRoomLastMessageInformation(String roomId) {
-
-        List<Message> messages = messageService.getMessagesByRoomId(roomId);
-
-        if (messages.size() != 0) {
-            Message lastMessage = messages.get(messages.size() - 1);
-            String lastMessageSenderId = lastMessage.getSenderId();
-            String lastMessageSenderFirstName = lastMessage.getSenderFirstName();
-            return new String[] { lastMessage.getContent(), lastMessageSenderId, lastMessageSenderFirstName };
-        } else {
-            return new String[0];
-        }
+    public UserRoomDTO getUserRoom(Room room) {
+        UserRoomDTO userRoom = new UserRoomDTO();
+        userRoom.setId(room.getId());
+        userRoom.setName(room.getName());
+        userRoom.setOwner(room.getOwner());
+        userRoom.setLastMessage(room.getLastMessage());
+        userRoom.setLastMessageId(room.getLastMessageId());
+        userRoom.setLastMessageSequence(room.getLastMessageSequence());
+        userRoom.setLastMessageSenderId(room.getLastMessageSenderId());
+        userRoom.setLastMessageSenderFirstName(room.getLastMessageSenderFirstName());
+        return userRoom;
     }
 
     /**
@@ -294,21 +302,16 @@ public class RoomService {
      * 
      * @param roomId the room id
      * @param userId the user id
+     * @return true if the user has the room, false if the user does not exist or
+     *         is in too many rooms
      */
-    public void addRoomToUser(String roomId, String userId) {
-        User user = userService.getUserById(userId).get();
-        Room room = getRoomById(roomId);
-
-        List<String> newRoomList = new ArrayList<>();
+    public boolean addRoomToUser(String roomId, String userId) {
+        boolean addedRoom = userRepository.addRoom(userId, roomId, MAX_USER_ROOMS);
 
-        if (user != null && room != null) {
-            if (user.getRooms() != null) {
-                newRoomList = user.getRooms();
-            }
-            newRoomList.add(roomId);
-            user.setRooms(newRoomList);
-            userRepository.save(user);
+        if (addedRoom) {
+            roomMembershipCache.addRoom(userId, roomId);
         }
+        return addedRoom;
     }
 
     /**
@@ -320,14 +323,6 @@ public class RoomService {
      * @return true if the new room name was set and false if it was not
      */
     public boolean changeRoomName(String roomId, String email, String newName) {
-        Room room = getRoomById(roomId);
-
-        if (room != null && room.getOwner().equals(email)) {
-            room.setName(newName);
-            roomRepository.save(room);
-            return true;
-        } else {
-            return false;
-        }
+        return roomRepository.rename(roomId, email, newName);
     }
 }
@@ -0,0 +1,207 @@
+package com.example.real_time_chat_app.service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.real_time_chat_app.model.RevokedToken;
+import com.example.real_time_chat_app.repository.RevokedTokenRepository;
+import com.example.real_time_chat_app.util.BloomFilter;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Revokes tokens before they expire. Revoked token ids are stored in the
+ * database and kept in an in-memory Bloom filter, so checking a token that was
+ * not revoked does not need a query. The database is only checked when the
+ * filter reports a possible match. The filter is loaded from the database at
+ * startup, picks up revocations from other instances periodically and is
+ * rebuilt from time to time to drop expired tokens.
+ * <p>
+ * All tokens of a user can also be revoked at once, e.g. when their password
+ * changes. These cutoffs are stored with the revoked tokens and kept in memory
+ * by subject, since there is one per user at most.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private static final String SUBJECT_PREFIX = "subject:";
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.expiration}")
+    private long expiration;
+
+    @Value("${jwt.revocation.expected-revocations:100000}")
+    private long expectedRevocations;
+
+    @Value("${jwt.revocation.false-positive-probability:0.001}")
+    private double falsePositiveProbability;
+
+    // Overlap between syncs so revocations saved while a sync runs are not missed
+    @Value("${jwt.revocation.sync-overlap:5000}")
+    private long syncOverlap;
+
+    private volatile BloomFilter revokedTokenFilter;
+
+    // Tokens of a subject issued before the time are revoked
+    private volatile Map<String, Date> issuedBeforeBySubject;
+
+    private volatile Date lastSync;
+
+    private Counter filterHits;
+
+    private Counter falsePositives;
+
+    @PostConstruct
+    private void init() {
+        filterHits = Counter.builder("security.token.revocation.filter.hits")
+                .description("Tokens the revocation filter reported as possibly revoked")
+                .register(meterRegistry);
+        falsePositives = Counter.builder("security.token.revocation.filter.false.positives")
+                .description("Filter hits for tokens that were not revoked")
+                .register(meterRegistry);
+
+        rebuild();
+    }
+
+    /**
+     * Revokes a token until it expires.
+     * 
+     * @param claims the verified claims of the token
+     */
+    public void revoke(Claims claims) {
+        // Tokens issued before token ids were added can not be revoked
+        if (claims.getId() == null) {
+            return;
+        }
+
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(claims.getId());
+        revokedToken.setRevokedAt(new Date());
+        revokedToken.setExpiresAt(claims.getExpiration());
+        revokedTokenRepository.save(revokedToken);
+
+        revokedTokenFilter.put(claims.getId());
+    }
+
+    /**
+     * Revokes every token of a subject issued before a time. Token issue times
+     * only have seconds, so tokens issued in the same second as the cutoff are
+     * kept, and the token used for the change should be revoked on its own.
+     * 
+     * @param subject      the subject of the tokens
+     * @param issuedBefore the time the tokens were issued before
+     */
+    public void revokeIssuedBefore(String subject, Date issuedBefore) {
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(SUBJECT_PREFIX + subject);
+        revokedToken.setSubject(subject);
+        revokedToken.setIssuedBefore(issuedBefore);
+        revokedToken.setRevokedAt(new Date());
+        // Every token issued before the cutoff has expired by then
+        revokedToken.setExpiresAt(new Date(issuedBefore.getTime() + expiration * 1000));
+        revokedTokenRepository.save(revokedToken);
+
+        addIssuedBefore(issuedBeforeBySubject, revokedToken);
+    }
+
+    /**
+     * Checks if a token was revoked.
+     * 
+     * @param claims the verified claims of the token
+     * @return true if the token was revoked
+     */
+    public boolean isRevoked(Claims claims) {
+        Date issuedBefore = issuedBeforeBySubject.get(claims.getSubject());
+
+        if (issuedBefore != null && (claims.getIssuedAt() == null
+                || claims.getIssuedAt().getTime() < issuedBefore.getTime() / 1000 * 1000)) {
+            return true;
+        }
+
+        String tokenId = claims.getId();
+
+        if (tokenId == null || !revokedTokenFilter.mightContain(tokenId)) {
+            return false;
+        }
+
+        filterHits.increment();
+        boolean revoked = revokedTokenRepository.existsById(tokenId);
+
+        if (!revoked) {
+            falsePositives.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Adds tokens revoked since the last sync, including by other instances, to
+     * the filter.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:5000}")
+    public void sync() {
+        Date syncStart = new Date();
+        Date since = new Date(lastSync.getTime() - syncOverlap);
+
+        for (RevokedToken revokedToken : revokedTokenRepository.findByRevokedAtGreaterThanEqual(since)) {
+            add(revokedTokenFilter, issuedBeforeBySubject, revokedToken);
+        }
+        lastSync = syncStart;
+    }
+
+    /**
+     * Replaces the filter with one built from the stored revocations. Expired
+     * tokens have been removed from the database by then, so they are left out.
+     */
+    @Scheduled(initialDelayString = "${jwt.revocation.rebuild-interval:3600000}",
+            fixedDelayString = "${jwt.revocation.rebuild-interval:3600000}")
+    public void rebuild() {
+        Date rebuildStart = new Date();
+        List<RevokedToken> revokedTokens = revokedTokenRepository.findAll();
+
+        BloomFilter filter = new BloomFilter(Math.max(expectedRevocations, revokedTokens.size() * 2L),
+                falsePositiveProbability);
+        Map<String, Date> issuedBefore = new ConcurrentHashMap<>();
+        for (RevokedToken revokedToken : revokedTokens) {
+            add(filter, issuedBefore, revokedToken);
+        }
+
+        revokedTokenFilter = filter;
+        issuedBeforeBySubject = issuedBefore;
+        lastSync = rebuildStart;
+        logger.info("Loaded " + revokedTokens.size() + " revoked tokens");
+    }
+
+    private static void add(BloomFilter filter, Map<String, Date> issuedBefore, RevokedToken revokedToken) {
+        if (revokedToken.getSubject() != null) {
+            addIssuedBefore(issuedBefore, revokedToken);
+        } else {
+            filter.put(revokedToken.getTokenId());
+        }
+    }
+
+    /** Keeps the latest cutoff of a subject. */
+    private static void addIssuedBefore(Map<String, Date> issuedBefore, RevokedToken revokedToken) {
+        issuedBefore.merge(revokedToken.getSubject(), revokedToken.getIssuedBefore(),
+                (current, added) -> added.after(current) ? added : current);
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.example.real_time_chat_app.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caches the public profile information of users by id for participant lists,
+ * room lists and event routing. Users missing from the cache are loaded together
+ * in one query, and a user is evicted when they save their profile. Profiles
+ * also expire so that changes saved on another instance are picked up.
+ */
+@Component
+public class UserProfileCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${profile.cache.maximum-size:50000}")
+    private long maximumSize;
+
+    @Value("${profile.cache.expiration:600}")
+    private long expiration;
+
+    private Cache<String, Profile> profiles;
+
+    @PostConstruct
+    private void init() {
+        profiles = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expiration))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "userProfile");
+    }
+
+    /**
+     * Gets the profiles of several users. Users that do not exist are left out of
+     * the result.
+     *
+     * @param userIds the user ids
+     * @return a map of user ids to profiles
+     */
+    public Map<String, Profile> getProfiles(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Map.of();
+        }
+        return profiles.getAll(userIds, this::loadProfiles);
+    }
+
+    /**
+     * Removes a user's profile from the cache after it changed.
+     *
+     * @param userId the user id
+     */
+    public void evict(String userId) {
+        profiles.invalidate(userId);
+    }
+
+    /**
+     * Loads the profiles of the users that are not in the cache.
+     *
+     * @param userIds the user ids missing from the cache
+     * @return a map of user ids to profiles
+     */
+    private Map<String, Profile> loadProfiles(Set<? extends String> userIds) {
+        Map<String, Profile> loadedProfiles = new HashMap<>();
+
+        for (User user : userRepository.findProfilesByIdIn(userIds)) {
+            loadedProfiles.put(user.getId(), new Profile(user));
+        }
+        return loadedProfiles;
+    }
+
+    /** The public profile information of a user. */
+    public static class Profile {
+
+        private final String id;
+
+        private final String email;
+
+        private final String firstName;
+
+        private final String lastName;
+
+        private final String profilePictureURL;
+
+        Profile(User user) {
+            this.id = user.getId();
+            this.email = user.getEmail();
+            this.firstName = user.getFirstName();
+            this.lastName = user.getLastName();
+            this.profilePictureURL = user.getProfilePictureURL();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public String getProfilePictureURL() {
+            return profilePictureURL;
+        }
+    }
+
+}
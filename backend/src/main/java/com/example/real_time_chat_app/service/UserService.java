@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 
 import com.example.real_time_chat_app.model.User;
 import com.example.real_time_chat_app.repository.UserRepository;
+import com.example.real_time_chat_app.util.JwtAuthenticationResolver;
 import com.example.real_time_chat_app.util.JwtUtil;
 
 /** Handles user related functions. */
@@ -37,6 +38,15 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    @Autowired
+    private RoomMembershipCache roomMembershipCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private JwtAuthenticationResolver jwtAuthenticationResolver;
+
     /**
      * Creates a new user.
      * 
@@ -84,8 +94,7 @@ public class UserService {
      * @return true if the user is in the room
      */
     public boolean checkIfInRoom(String roomId, String email) {
-        User user = findByEmail(email).get();
-        return user.getRooms().contains(roomId);
+        return roomMembershipCache.isMember(email, roomId);
     }
 
     /**
@@ -114,6 +123,8 @@ public class UserService {
         Optional<User> user = findById(unsavedUser.getId());
 
         if (user.isPresent()) {
+            jwtAuthenticationResolver.evict(user.get().getEmail());
+
             if (unsavedUser.getPassword() != "") {
                 user.get().setPassword(bCryptPasswordEncoder.encode(unsavedUser.getPassword()));
             }
@@ -123,6 +134,8 @@ public class UserService {
             user.get().setEmail(unsavedUser.getEmail());
 
             User savedUser = userRepository.save(user.get());
+            roomMembershipCache.evictUser(savedUser.getId());
+            userProfileCache.evict(savedUser.getId());
             return reauthenticateUser(savedUser, currentPassword);
         } else {
             return "";
@@ -153,7 +166,7 @@ public class UserService {
         }
 
         final UserDetails userDetails = userDetailsService.loadUserByUsername(user.getEmail());
-        final String accessToken = jwtUtil.generateToken(userDetails.getUsername(), "USER");                                                                           
+        final String accessToken = jwtUtil.generateToken(userDetails);                                                                           
 
         return accessToken;
     }
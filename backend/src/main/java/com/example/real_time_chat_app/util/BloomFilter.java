@@ -0,0 +1,88 @@
+package com.example.real_time_chat_app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe Bloom filter for strings. It can report that a value might have
+ * been added when it was not, with about the configured probability, but never
+ * reports an added value as missing. Values can not be removed, so the filter is
+ * rebuilt to drop them.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for a number of values.
+     * 
+     * @param expectedInsertions       the number of values expected to be added
+     * @param falsePositiveProbability the wanted false positive probability
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long insertions = Math.max(expectedInsertions, 1);
+        long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveProbability)
+                / (Math.log(2) * Math.log(2)));
+
+        words = new AtomicLongArray((int) Math.max((optimalBits + 63) / 64, 1));
+        bitCount = words.length() * 64L;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a value to the filter.
+     * 
+     * @param value the value
+     */
+    public void put(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << bit;
+            words.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+        }
+    }
+
+    /**
+     * Checks if a value might have been added to the filter.
+     * 
+     * @param value the value
+     * @return false if the value was definitely not added
+     */
+    public boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 64 bit FNV-1a hash of the value's UTF-8 bytes. */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /** Spreads the bits of a hash so it can be used as a second hash. */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return (hash ^ (hash >>> 31)) | 1L;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.example.real_time_chat_app.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.example.real_time_chat_app.exception.PasswordHashingBusyException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A BCrypt password encoder that runs hashing on a dedicated, bounded executor.
+ * The request thread still waits for its hash, so the bound is what protects the
+ * servlet pool: at most the number of hashing threads plus the queue capacity
+ * requests can be waiting on hashing. When every hashing thread is busy and the
+ * queue is full, the work is rejected straight away with a
+ * {@link PasswordHashingBusyException} so a burst of logins can not use up the
+ * servlet threads. The queue should therefore stay a small multiple of the
+ * number of threads.
+ * <p>
+ * Stored hashes with any other work factor, lower or higher, are reported as
+ * needing an upgrade so they are rehashed with the configured one on login.
+ */
+public class BoundedBCryptPasswordEncoder extends BCryptPasswordEncoder implements AutoCloseable {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * Creates the encoder.
+     * 
+     * @param strength      the BCrypt work factor
+     * @param threads       the number of hashing threads
+     * @param queueCapacity the number of hashes that can wait for a thread
+     * @param meterRegistry the registry for the hashing metrics
+     */
+    public BoundedBCryptPasswordEncoder(int strength, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        super(strength);
+        this.strength = strength;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = Timer.builder("security.password.hash")
+                .description("Time spent waiting for a hashing thread and hashing passwords")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        matchesTimer = Timer.builder("security.password.hash")
+                .description("Time spent waiting for a hashing thread and hashing passwords")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("security.password.hash.rejected")
+                .description("Password hashes rejected because the hashing executor was saturated")
+                .register(meterRegistry);
+        Gauge.builder("security.password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a hashing thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> super.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> super.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    /**
+     * Checks if a stored hash was made with a different work factor. The parent
+     * class only upgrades hashes with a lower work factor.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Encoded password does not look like BCrypt: " + encodedPassword);
+        }
+        return Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    /**
+     * Runs hashing work on the executor and waits for the result. The time
+     * recorded includes waiting in the queue, since that is part of the latency
+     * the request sees.
+     * 
+     * @param task  the hashing work
+     * @param timer the timer for the work
+     * @return the result of the work
+     * @throws PasswordHashingBusyException if the executor is saturated
+     */
+    private <T> T run(Callable<T> task, Timer timer) {
+        long start = System.nanoTime();
+        try {
+            T result = executor.submit(task).get();
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingBusyException("Too many requests, please try again later", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Stops the hashing threads when the application shuts down. */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.example.real_time_chat_app.util;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Decides if the permessage-deflate extension is accepted in a WebSocket
+ * handshake. The container accepts it by default, so this only lets it be
+ * turned off, globally or by the client with compress=false in the URI. The
+ * container compresses every frame with its own fixed level. The configured
+ * level and minimum size apply to the STOMP-level compression of
+ * {@link PayloadEncodingInterceptor}, which clients without permessage-deflate
+ * can ask for.
+ */
+@Component
+public class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    @Value("${websocket.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Override
+    @NonNull
+    protected List<WebSocketExtension> filterRequestedExtensions(@NonNull ServerHttpRequest request,
+            @NonNull List<WebSocketExtension> requestedExtensions,
+            @NonNull List<WebSocketExtension> supportedExtensions) {
+
+        List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requestedExtensions,
+                supportedExtensions);
+
+        String compress = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams()
+                .getFirst("compress");
+
+        if (!compressionEnabled || "false".equals(compress)) {
+            return extensions.stream()
+                    .filter(extension -> !PERMESSAGE_DEFLATE.equals(extension.getName()))
+                    .toList();
+        }
+        return extensions;
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.example.real_time_chat_app.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Records which WebSocket sessions negotiated permessage-deflate, and how well
+ * the STOMP frames compressed by {@link PayloadEncodingInterceptor} compress.
+ * The container compresses permessage-deflate frames without exposing any
+ * numbers, so only the frames compressed here have a ratio and time.
+ */
+@Component
+public class CompressionMetrics implements WebSocketHandlerDecoratorFactory {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter compressedSessions;
+
+    private Counter uncompressedSessions;
+
+    private Counter compressedFrames;
+
+    private Counter uncompressedFrames;
+
+    private DistributionSummary compressionRatio;
+
+    private Timer compressionTime;
+
+    @PostConstruct
+    private void init() {
+        compressedSessions = Counter.builder("websocket.compression.sessions")
+                .description("WebSocket sessions by whether they use permessage-deflate")
+                .tag("compressed", "true")
+                .register(meterRegistry);
+        uncompressedSessions = Counter.builder("websocket.compression.sessions")
+                .description("WebSocket sessions by whether they use permessage-deflate")
+                .tag("compressed", "false")
+                .register(meterRegistry);
+        compressedFrames = Counter.builder("websocket.compression.frames")
+                .description("Frames for sessions that accept deflate by whether they were compressed")
+                .tag("compressed", "true")
+                .register(meterRegistry);
+        uncompressedFrames = Counter.builder("websocket.compression.frames")
+                .description("Frames for sessions that accept deflate by whether they were compressed")
+                .tag("compressed", "false")
+                .register(meterRegistry);
+        compressionRatio = DistributionSummary.builder("websocket.compression.ratio")
+                .description("Compressed size divided by original size of compressed frames")
+                .register(meterRegistry);
+        compressionTime = Timer.builder("websocket.compression.time")
+                .description("Time spent compressing frames")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                if (session instanceof SockJsSession || !usesPerMessageDeflate(session)) {
+                    uncompressedSessions.increment();
+                } else {
+                    compressedSessions.increment();
+                }
+                super.afterConnectionEstablished(session);
+            }
+        };
+    }
+
+    /**
+     * Records the time spent compressing a payload. A broadcast payload is
+     * compressed once for all of its frames.
+     *
+     * @param nanos the time spent compressing
+     */
+    public void recordCompressionTime(long nanos) {
+        compressionTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a frame for a session that accepts deflate. Frames that did not get
+     * smaller are sent uncompressed.
+     *
+     * @param originalSize   the size of the payload before compressing
+     * @param compressedSize the size of the compressed payload
+     */
+    public void recordFrame(int originalSize, int compressedSize) {
+        if (compressedSize < originalSize) {
+            compressedFrames.increment();
+            compressionRatio.record((double) compressedSize / originalSize);
+        } else {
+            uncompressedFrames.increment();
+        }
+    }
+
+    /** Records a frame that was too small to compress. */
+    public void recordUncompressed() {
+        uncompressedFrames.increment();
+    }
+
+    /**
+     * Checks if a session negotiated permessage-deflate.
+     *
+     * @param session the WebSocket session
+     * @return true if the container compresses the session's frames
+     */
+    static boolean usesPerMessageDeflate(WebSocketSession session) {
+        return session.getExtensions().stream()
+                .anyMatch(extension -> CompressionHandshakeHandler.PERMESSAGE_DEFLATE.equals(extension.getName()));
+    }
+
+}
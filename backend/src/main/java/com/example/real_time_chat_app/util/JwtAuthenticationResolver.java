@@ -0,0 +1,100 @@
+package com.example.real_time_chat_app.util;
+
+import java.time.Duration;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import com.example.real_time_chat_app.service.TokenRevocationService;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Creates the authenticated user for a JWT token. In the "claims" mode the user
+ * is built from the verified subject and role claims without a database lookup.
+ * In the "cached" mode the user is loaded from the database and cached for a
+ * short time, so a deleted user loses access once their entry expires.
+ */
+@Component
+public class JwtAuthenticationResolver {
+
+    public static final String CLAIMS_MODE = "claims";
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.authentication-mode:claims}")
+    private String authenticationMode;
+
+    @Value("${jwt.user-details-cache.maximum-size:10000}")
+    private long userDetailsCacheMaximumSize;
+
+    @Value("${jwt.user-details-cache.expiration:60}")
+    private long userDetailsCacheExpiration;
+
+    private Cache<String, UserDetails> userDetailsCache;
+
+    @PostConstruct
+    private void init() {
+        userDetailsCache = Caffeine.newBuilder()
+                .maximumSize(userDetailsCacheMaximumSize)
+                .expireAfterWrite(Duration.ofSeconds(userDetailsCacheExpiration))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, userDetailsCache, "jwtUserDetails");
+    }
+
+    /**
+     * Gets the user for a token.
+     * 
+     * @param token the JWT token
+     * @return the user details or null if the token has expired or was revoked
+     */
+    public UserDetails loadUserDetails(String token) {
+        Claims claims = jwtUtil.extractAllClaims(token);
+
+        if (claims.getExpiration().before(new Date()) || tokenRevocationService.isRevoked(claims)) {
+            return null;
+        }
+
+        if (CLAIMS_MODE.equals(authenticationMode)) {
+            return User.withUsername(claims.getSubject())
+                    .password("")
+                    .roles(claims.get("role", String.class))
+                    .build();
+        } else {
+            return userDetailsCache.get(claims.getSubject(), userDetailsService::loadUserByUsername);
+        }
+    }
+
+    /**
+     * Removes a user from the cache after their email or password changed.
+     * 
+     * @param username the user's email
+     */
+    public void evict(String username) {
+        userDetailsCache.invalidate(username);
+    }
+
+}
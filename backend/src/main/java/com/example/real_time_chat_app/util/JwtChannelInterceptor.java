@@ -1,5 +1,10 @@
 package com.example.real_time_chat_app.util;
 
+import java.security.Principal;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
@@ -8,28 +13,62 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import com.example.real_time_chat_app.service.CustomUserDetailsService;
+import com.example.real_time_chat_app.service.RoomMembershipCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 
 /**
  * For using the JWT token to authorize messages sent during the web socket
- * connection.
+ * connection. Subscriptions to a room's topics are only allowed for the room's
+ * members, and subscriptions to any other broker destination except the user's
+ * own queues are denied.
  */
 @Component
 public class JwtChannelInterceptor implements ChannelInterceptor {
 
+    // Matches /topic/room/{roomId}, /topic/room/{roomId}/users and /topic/room/{roomId}/users/all
+    private static final Pattern ROOM_DESTINATION = Pattern.compile("^/topic/room/([^/]+)(/users(/all)?)?$");
+
+    // The simple broker matches subscriptions as Ant patterns
+    private static final Pattern DESTINATION_PATTERN = Pattern.compile("[*?{]");
+
+    private static final String USER_DESTINATION_PREFIX = "/user/";
+
     @Autowired
-    private JwtUtil jwtUtil;
+    private JwtAuthenticationResolver jwtAuthenticationResolver;
 
     @Autowired
-    private CustomUserDetailsService customUserDetailsService;
+    private RoomMembershipCache roomMembershipCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer subscriptionAuthorizationTimer;
+
+    private Counter deniedSubscriptions;
+
+    @PostConstruct
+    private void init() {
+        subscriptionAuthorizationTimer = Timer.builder("chat.subscribe.authorization")
+                .description("Time spent authorizing room subscriptions")
+                .register(meterRegistry);
+        deniedSubscriptions = Counter.builder("chat.subscribe.denied")
+                .description("Subscriptions denied because the user is not in the room or the destination is not allowed")
+                .register(meterRegistry);
+    }
 
     /**
-     * Before the message is sent, validate the token and authorize the user.
+     * Before the message is sent, validate the token and authorize the user. The
+     * user authenticated during the handshake is reused when there is one.
      */
     @SuppressWarnings("null")
     @Override
@@ -37,28 +76,90 @@ public class JwtChannelInterceptor implements ChannelInterceptor {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-            String token = accessor.getFirstNativeHeader("Authorization");
+            UsernamePasswordAuthenticationToken authentication = getHandshakeAuthentication(accessor);
 
-            if (token != null && token.startsWith("Bearer ")) {
-                token = token.substring(7);
+            if (authentication == null) {
+                String token = accessor.getFirstNativeHeader("Authorization");
 
-                String username = jwtUtil.extractUsername(token);
+                if (token != null && token.startsWith("Bearer ")) {
+                    token = token.substring(7);
 
-                if (username != null) {
-                    UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-                    if (jwtUtil.validateToken(token, username)) {
-                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    UserDetails userDetails = jwtAuthenticationResolver.loadUserDetails(token);
+                    if (userDetails != null) {
+                        authentication = new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities());
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                        accessor.setUser(authentication);
                     } else {
                         throw new IllegalArgumentException("Invalid JWT token");
                     }
                 }
+            }
 
+            if (authentication != null) {
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+                accessor.setUser(authentication);
             }
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            authorizeSubscription(accessor);
         }
         return message;
     }
 
+    /**
+     * Checks that a user subscribing to a room's topic is in the room, using the
+     * cached room memberships which are updated when users join and leave rooms.
+     * The user's own queues are always allowed. Patterns and every other
+     * destination are denied, since a pattern would match other rooms' topics
+     * or other users' queues in the broker.
+     * 
+     * @param accessor the SUBSCRIBE message headers
+     * @throws AccessDeniedException if the user is not in the room or the
+     *                               destination is not allowed
+     */
+    private void authorizeSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+
+        if (destination == null || DESTINATION_PATTERN.matcher(destination).find()) {
+            deniedSubscriptions.increment();
+            throw new AccessDeniedException("Subscription destination is not allowed");
+        }
+
+        if (destination.startsWith(USER_DESTINATION_PREFIX)) {
+            return;
+        }
+
+        Matcher matcher = ROOM_DESTINATION.matcher(destination);
+
+        if (!matcher.matches()) {
+            deniedSubscriptions.increment();
+            throw new AccessDeniedException("Subscription destination is not allowed");
+        }
+
+        Principal user = accessor.getUser();
+        String roomId = matcher.group(1);
+
+        boolean isMember = subscriptionAuthorizationTimer
+                .record(() -> user != null && roomMembershipCache.isMember(user.getName(), roomId));
+
+        if (!isMember) {
+            deniedSubscriptions.increment();
+            throw new AccessDeniedException("Not a member of room " + roomId);
+        }
+    }
+
+    /**
+     * Gets the user authenticated by the handshake interceptor.
+     * 
+     * @param accessor the CONNECT message headers
+     * @return the authentication or null if there is none
+     */
+    private UsernamePasswordAuthenticationToken getHandshakeAuthentication(StompHeaderAccessor accessor) {
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+
+        if (sessionAttributes != null && sessionAttributes
+                .get(JwtHandshakeInterceptor.AUTHENTICATION_ATTRIBUTE) instanceof UsernamePasswordAuthenticationToken authentication) {
+            return authentication;
+        }
+        return null;
+    }
+
 }
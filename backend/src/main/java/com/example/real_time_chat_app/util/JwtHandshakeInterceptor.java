@@ -5,6 +5,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -12,26 +13,50 @@ import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import io.jsonwebtoken.JwtException;
 
 /**
- * Checks if a token exists in the web socket URI and either accepts or rejects
- * the handshake
+ * Verifies the token in the web socket URI and either accepts or rejects the
+ * handshake. The authenticated user is stored in the session attributes so the
+ * STOMP CONNECT does not have to verify the token again.
  */
 @Component
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
+    public static final String AUTHENTICATION_ATTRIBUTE = "authentication";
+
     private static final Logger logger = LoggerFactory.getLogger(JwtHandshakeInterceptor.class);
 
+    @Autowired
+    private JwtAuthenticationResolver jwtAuthenticationResolver;
+
     @Override
     public boolean beforeHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
             @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes) throws Exception {
 
-        String token = request.getURI().getQuery().split("token=")[1]; // Gets the token from the URI
+        // Gets the token from the URI
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+
+        UserDetails userDetails = null;
 
         if (token != null) {
+            try {
+                userDetails = jwtAuthenticationResolver.loadUserDetails(token);
+            } catch (JwtException | IllegalArgumentException e) {
+                logger.info("Invalid JWT token in handshake: " + e.getMessage());
+            }
+        }
+
+        if (userDetails != null) {
+            attributes.put(AUTHENTICATION_ATTRIBUTE,
+                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
             return true; // Accept handshake
         } else {
             response.setStatusCode(HttpStatus.FORBIDDEN);
@@ -0,0 +1,383 @@
+package com.example.real_time_chat_app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Lets a client choose CBOR instead of JSON for the messages sent to it. The
+ * client lists application/cbor in the accept-content-type header of its
+ * CONNECT frame. This is ignored for SockJS sessions, which can not carry binary
+ * frames. Messages are still converted to JSON
+ * once before the broker, and the JSON is converted to CBOR for each session
+ * that asked for it. Spring only sends binary WebSocket frames for
+ * application/octet-stream, so the sessions are decorated to send CBOR frames
+ * as binary. This interceptor belongs on the outbound channel, and the
+ * {@link #getInboundInterceptor() inbound interceptor} on the inbound channel
+ * reads the CONNECT and DISCONNECT frames.
+ * <p>
+ * A client can also list deflate in the accept-encoding header of its CONNECT
+ * frame to have message bodies of at least the minimum size compressed with the
+ * configured level, marked with a content-encoding:deflate header. Unlike
+ * permessage-deflate, whose level is fixed by the container and which
+ * compresses every frame, small frames are left alone. Sessions that already
+ * negotiated permessage-deflate are not compressed twice.
+ */
+@Component
+public class PayloadEncodingInterceptor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    private static final String ACCEPT_CONTENT_TYPE_HEADER = "accept-content-type";
+
+    private static final String ACCEPT_ENCODING_HEADER = "accept-encoding";
+
+    private static final String CONTENT_ENCODING_HEADER = "content-encoding";
+
+    private static final String DEFLATE = "deflate";
+
+    private static final byte[] CBOR_CONTENT_TYPE_HEADER = "\ncontent-type:application/cbor"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] DEFLATE_CONTENT_ENCODING_HEADER = "\ncontent-encoding:deflate"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadEncodingInterceptor.class);
+
+    @Autowired
+    private CompressionMetrics compressionMetrics;
+
+    @Value("${websocket.compression.level:6}")
+    private int compressionLevel;
+
+    @Value("${websocket.compression.min-size:1024}")
+    private int compressionMinSize;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    // Plain WebSocket sessions that can receive binary frames
+    private final Set<String> binarySessionIds = ConcurrentHashMap.newKeySet();
+
+    // Binary sessions whose frames the container compresses with permessage-deflate
+    private final Set<String> perMessageDeflateSessionIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> cborSessionIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> deflateSessionIds = ConcurrentHashMap.newKeySet();
+
+    // The broker sends the same payload to every subscriber, so the last
+    // conversion and compression are reused for the rest of a broadcast
+    private final AtomicReference<Conversion> lastConversion = new AtomicReference<>();
+
+    private final AtomicReference<Conversion> lastCompression = new AtomicReference<>();
+
+    private final ChannelInterceptor inboundInterceptor = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+            trackSession(message);
+            return message;
+        }
+    };
+
+    /**
+     * Gets the interceptor for the inbound channel. It only records which
+     * sessions asked for CBOR or deflate, so frames sent by clients are never
+     * re-encoded.
+     * 
+     * @return the inbound channel interceptor
+     */
+    public ChannelInterceptor getInboundInterceptor() {
+        return inboundInterceptor;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))) {
+            return encode(message);
+        }
+        return message;
+    }
+
+    /**
+     * Records if a connecting session asked for CBOR or deflate and forgets
+     * sessions that disconnect.
+     * 
+     * @param message an incoming message
+     */
+    private void trackSession(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+
+        if (SimpMessageType.CONNECT.equals(messageType) || SimpMessageType.DISCONNECT.equals(messageType)) {
+            StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+            if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+                if (!binarySessionIds.contains(sessionId)) {
+                    return;
+                }
+
+                String acceptContentType = accessor.getFirstNativeHeader(ACCEPT_CONTENT_TYPE_HEADER);
+                if (acceptContentType != null && MimeTypeUtils.parseMimeTypes(acceptContentType).stream()
+                        .anyMatch(APPLICATION_CBOR::equalsTypeAndSubtype)) {
+                    cborSessionIds.add(sessionId);
+                }
+
+                String acceptEncoding = accessor.getFirstNativeHeader(ACCEPT_ENCODING_HEADER);
+                if (acceptEncoding != null && !perMessageDeflateSessionIds.contains(sessionId)
+                        && Set.of(acceptEncoding.split("\\s*,\\s*")).contains(DEFLATE)) {
+                    deflateSessionIds.add(sessionId);
+                }
+            } else if (sessionId != null) {
+                cborSessionIds.remove(sessionId);
+                deflateSessionIds.remove(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Converts an outgoing JSON message to CBOR and compresses it as its session
+     * asked for.
+     * 
+     * @param message the outgoing message
+     * @return the message to send
+     */
+    private Message<?> encode(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        if (sessionId == null) {
+            return message;
+        }
+
+        Message<?> encoded = cborSessionIds.contains(sessionId) ? toCbor(message) : message;
+        return deflateSessionIds.contains(sessionId) ? compress(encoded) : encoded;
+    }
+
+    /**
+     * Converts an outgoing JSON message to CBOR.
+     * 
+     * @param message the outgoing message
+     * @return the CBOR message, or the message if it is not JSON
+     */
+    private Message<?> toCbor(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+
+        if (!(message.getPayload() instanceof byte[] payload) || !isJson(headers)) {
+            return message;
+        }
+
+        try {
+            Conversion conversion = lastConversion.get();
+            byte[] cborPayload;
+
+            if (conversion != null && conversion.jsonPayload == payload) {
+                cborPayload = conversion.cborPayload;
+            } else {
+                cborPayload = cborMapper.writeValueAsBytes(jsonMapper.readTree(payload));
+                lastConversion.set(new Conversion(payload, cborPayload));
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            accessor.setContentType(APPLICATION_CBOR);
+            return MessageBuilder.createMessage(cborPayload, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            logger.warn("Could not convert message to CBOR, sending JSON", e);
+            return message;
+        }
+    }
+
+    /**
+     * Compresses the body of an outgoing message if it is at least the minimum
+     * size and gets smaller.
+     * 
+     * @param message the outgoing message
+     * @return the compressed message, or the message if it was not compressed
+     */
+    private Message<?> compress(Message<?> message) {
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        if (payload.length < compressionMinSize) {
+            compressionMetrics.recordUncompressed();
+            return message;
+        }
+
+        Conversion compression = lastCompression.get();
+        byte[] compressedPayload;
+
+        if (compression != null && compression.jsonPayload == payload) {
+            compressedPayload = compression.cborPayload;
+        } else {
+            compressedPayload = deflate(payload);
+            lastCompression.set(new Conversion(payload, compressedPayload));
+        }
+
+        compressionMetrics.recordFrame(payload.length, compressedPayload.length);
+        if (compressedPayload.length >= payload.length) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(CONTENT_ENCODING_HEADER, DEFLATE);
+        return MessageBuilder.createMessage(compressedPayload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Compresses a payload in the zlib format with the configured level.
+     * 
+     * @param payload the payload
+     * @return the compressed payload
+     */
+    private byte[] deflate(byte[] payload) {
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(compressionLevel);
+
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            compressionMetrics.recordCompressionTime(System.nanoTime() - start);
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                if (session instanceof SockJsSession) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+
+                binarySessionIds.add(session.getId());
+                if (CompressionMetrics.usesPerMessageDeflate(session)) {
+                    perMessageDeflateSessionIds.add(session.getId());
+                }
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+                        if (message instanceof TextMessage textMessage && hasBinaryPayload(getId(),
+                                textMessage.asBytes())) {
+                            super.sendMessage(new BinaryMessage(textMessage.asBytes()));
+                        } else {
+                            super.sendMessage(message);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus)
+                    throws Exception {
+                binarySessionIds.remove(session.getId());
+                perMessageDeflateSessionIds.remove(session.getId());
+                cborSessionIds.remove(session.getId());
+                deflateSessionIds.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Checks if an encoded STOMP frame for a session has a CBOR or compressed
+     * body, which needs a binary WebSocket frame.
+     * 
+     * @param sessionId the session's id
+     * @param frame     the encoded frame
+     * @return true if the frame's payload is binary
+     */
+    private boolean hasBinaryPayload(String sessionId, byte[] frame) {
+        return (cborSessionIds.contains(sessionId) && hasHeader(frame, CBOR_CONTENT_TYPE_HEADER))
+                || (deflateSessionIds.contains(sessionId) && hasHeader(frame, DEFLATE_CONTENT_ENCODING_HEADER));
+    }
+
+    /**
+     * Checks if the headers of an encoded STOMP frame contain a header line.
+     * 
+     * @param frame  the encoded frame
+     * @param header the header line, starting with a newline
+     * @return true if the frame has the header
+     */
+    private boolean hasHeader(byte[] frame, byte[] header) {
+        for (int i = 0; i + header.length <= frame.length; i++) {
+            // The headers end at the first empty line
+            if (frame[i] == '\n' && i + 1 < frame.length && frame[i + 1] == '\n') {
+                return false;
+            }
+
+            int j = 0;
+            while (j < header.length && frame[i + j] == header[j]) {
+                j++;
+            }
+            if (j == header.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isJson(MessageHeaders headers) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+
+        if (contentType instanceof MimeType mimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(mimeType);
+        } else if (contentType instanceof String value) {
+            return MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(MimeTypeUtils.parseMimeType(value));
+        }
+        return false;
+    }
+
+    /** A payload and what it was converted or compressed to. */
+    private record Conversion(byte[] jsonPayload, byte[] cborPayload) {
+    }
+
+}
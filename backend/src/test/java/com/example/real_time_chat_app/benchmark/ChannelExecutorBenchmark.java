@@ -0,0 +1,132 @@
+package com.example.real_time_chat_app.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Compares how long a STOMP channel takes to handle a burst of messages on the
+ * default platform thread pool and on virtual threads, with handlers that block
+ * like a database call. Each session sends through its own ordered channel, as
+ * Spring does per WebSocket session. The virtual executor needs Java 21. Run
+ * the main method on the test classpath, or
+ * {@code org.openjdk.jmh.Main ChannelExecutorBenchmark} after
+ * {@code mvn test-compile -Pjava21}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelExecutorBenchmark {
+
+	private static final int SESSIONS = 200;
+
+	private static final int MESSAGES_PER_SESSION = 20;
+
+	private static final long BLOCKING_MILLIS = 2;
+
+	@Param({ "platform", "virtual" })
+	private String executor;
+
+	private ThreadPoolTaskExecutor platformExecutor;
+
+	private List<OrderedMessageChannelDecorator> sessionChannels;
+
+	private volatile CountDownLatch handled;
+
+	@Setup
+	public void setup() {
+		ExecutorSubscribableChannel channel;
+
+		if ("virtual".equals(executor)) {
+			SimpleAsyncTaskExecutor virtualExecutor = new SimpleAsyncTaskExecutor("virtual-");
+			virtualExecutor.setVirtualThreads(true);
+			channel = new ExecutorSubscribableChannel(virtualExecutor);
+		} else {
+			// The same pool size Spring uses for the channels by default
+			platformExecutor = new ThreadPoolTaskExecutor();
+			platformExecutor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+			platformExecutor.setAllowCoreThreadTimeOut(true);
+			platformExecutor.initialize();
+			channel = new ExecutorSubscribableChannel(platformExecutor);
+		}
+		OrderedMessageChannelDecorator.configureInterceptor(channel, true);
+
+		channel.subscribe(message -> {
+			try {
+				Thread.sleep(BLOCKING_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			handled.countDown();
+		});
+
+		sessionChannels = new ArrayList<>();
+		for (int session = 0; session < SESSIONS; session++) {
+			sessionChannels.add(new OrderedMessageChannelDecorator(channel,
+					LogFactory.getLog(ChannelExecutorBenchmark.class)));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (platformExecutor != null) {
+			platformExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Sends a burst of messages from every session and waits for all of them to
+	 * be handled.
+	 */
+	@Benchmark
+	public void burst() throws InterruptedException {
+		handled = new CountDownLatch(SESSIONS * MESSAGES_PER_SESSION);
+
+		for (int sequence = 0; sequence < MESSAGES_PER_SESSION; sequence++) {
+			for (int session = 0; session < SESSIONS; session++) {
+				sessionChannels.get(session).send(createMessage("session" + session, sequence));
+			}
+		}
+		handled.await();
+	}
+
+	private Message<Integer> createMessage(String sessionId, int sequence) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setSessionId(sessionId);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(sequence, accessor.getMessageHeaders());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ChannelExecutorBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.example.real_time_chat_app.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.util.JwtUtil;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the token work done per authenticated HTTP request before and after
+ * caching verified claims. Run the main method on the test classpath, or
+ * {@code org.openjdk.jmh.Main JwtUtilBenchmark} after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+	private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+	private static final String USERNAME = "user@example.com";
+
+	private JwtUtil jwtUtil;
+
+	private String token;
+
+	@Setup
+	public void setup() {
+		jwtUtil = new JwtUtil();
+		ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+		ReflectionTestUtils.setField(jwtUtil, "expiration", 3600L);
+		ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaximumSize", 10000L);
+		ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+		token = jwtUtil.generateToken(USERNAME, "USER");
+	}
+
+	/**
+	 * The previous request path: the filter extracts the username, then
+	 * validateToken parses the token twice more, each time with a new key and
+	 * parser.
+	 */
+	@Benchmark
+	public void uncachedRequest(Blackhole blackhole) {
+		blackhole.consume(parseWithNewKey().getSubject());
+		blackhole.consume(parseWithNewKey().getSubject().equals(USERNAME));
+		blackhole.consume(parseWithNewKey().getExpiration().before(new java.util.Date()));
+	}
+
+	/**
+	 * The current request path with the prebuilt parser and the verified claims
+	 * cache.
+	 */
+	@Benchmark
+	public void cachedRequest(Blackhole blackhole) {
+		blackhole.consume(jwtUtil.extractUsername(token));
+		blackhole.consume(jwtUtil.validateToken(token, USERNAME));
+	}
+
+	private Claims parseWithNewKey() {
+		return Jwts.parser()
+				.verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+				.build()
+				.parseSignedClaims(token)
+				.getPayload();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JwtUtilBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
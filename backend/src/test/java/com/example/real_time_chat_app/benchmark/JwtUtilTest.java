@@ -0,0 +1,142 @@
+package com.example.real_time_chat_app.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.service.TokenRevocationService;
+import com.example.real_time_chat_app.util.JwtAuthenticationResolver;
+import com.example.real_time_chat_app.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that the verified claims cache measured by {@link JwtUtilBenchmark}
+ * never serves a token longer than the token itself is valid.
+ */
+class JwtUtilTest {
+
+	private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+	private static final String USERNAME = "user@example.com";
+
+	private final AtomicLong time = new AtomicLong();
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private JwtUtil jwtUtil;
+
+	@BeforeEach
+	void setup() {
+		jwtUtil = createJwtUtil(3600, (Ticker) time::get);
+	}
+
+	@Test
+	void cachedClaimsExpireWithTheToken() {
+		long now = System.currentTimeMillis();
+		String token = token(new Date(now + TimeUnit.SECONDS.toMillis(60)));
+
+		jwtUtil.extractAllClaims(token);
+		jwtUtil.extractAllClaims(token);
+		assertEquals(1, cacheGets("miss"));
+		assertEquals(1, cacheGets("hit"));
+
+		// Still cached just before the expiration, with the exp claim rounded to seconds
+		time.addAndGet(TimeUnit.SECONDS.toNanos(58));
+		jwtUtil.extractAllClaims(token);
+		assertEquals(2, cacheGets("hit"));
+
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2) + TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - now));
+		jwtUtil.extractAllClaims(token);
+		assertEquals(2, cacheGets("miss"));
+	}
+
+	@Test
+	void cachedTokensAreRejectedOnceExpired() throws Exception {
+		JwtUtil systemTimeJwtUtil = createJwtUtil(1, Ticker.systemTicker());
+		String token = systemTimeJwtUtil.generateToken(USERNAME, "USER");
+		Claims claims = systemTimeJwtUtil.extractAllClaims(token);
+
+		Thread.sleep(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()) + 50);
+
+		assertThrows(ExpiredJwtException.class, () -> systemTimeJwtUtil.extractAllClaims(token));
+	}
+
+	@Test
+	void expiredTokensAreNeverCached() {
+		String token = token(new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(1)));
+
+		assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractAllClaims(token));
+		assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractAllClaims(token));
+		assertEquals(2, cacheGets("miss"));
+		assertEquals(0, meterRegistry.get("cache.size").tag("cache", "jwtClaims").gauge().value());
+	}
+
+	@Test
+	void revokedTokensAreRejectedWhileTheirClaimsAreCached() {
+		TokenRevocationService tokenRevocationService = mock(TokenRevocationService.class);
+		JwtAuthenticationResolver resolver = new JwtAuthenticationResolver();
+		ReflectionTestUtils.setField(resolver, "jwtUtil", jwtUtil);
+		ReflectionTestUtils.setField(resolver, "userDetailsService", mock(UserDetailsService.class));
+		ReflectionTestUtils.setField(resolver, "tokenRevocationService", tokenRevocationService);
+		ReflectionTestUtils.setField(resolver, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(resolver, "authenticationMode", JwtAuthenticationResolver.CLAIMS_MODE);
+		ReflectionTestUtils.setField(resolver, "userDetailsCacheMaximumSize", 100L);
+		ReflectionTestUtils.setField(resolver, "userDetailsCacheExpiration", 60L);
+		ReflectionTestUtils.invokeMethod(resolver, "init");
+		String token = jwtUtil.generateToken(USERNAME, "USER");
+
+		when(tokenRevocationService.isRevoked(any(Claims.class))).thenReturn(false, true);
+
+		assertNotNull(resolver.loadUserDetails(token));
+		assertNull(resolver.loadUserDetails(token));
+		assertEquals(1, cacheGets("hit"));
+	}
+
+	private JwtUtil createJwtUtil(long expiration, Ticker ticker) {
+		JwtUtil jwtUtil = new JwtUtil();
+		ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+		ReflectionTestUtils.setField(jwtUtil, "expiration", expiration);
+		ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaximumSize", 10000L);
+		ReflectionTestUtils.setField(jwtUtil, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(jwtUtil, "ticker", ticker);
+		ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+		return jwtUtil;
+	}
+
+	private static String token(Date expiration) {
+		return Jwts.builder()
+				.subject(USERNAME)
+				.claim("role", "USER")
+				.issuedAt(new Date(expiration.getTime() - TimeUnit.HOURS.toMillis(1)))
+				.expiration(expiration)
+				.signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), Jwts.SIG.HS512)
+				.compact();
+	}
+
+	private double cacheGets(String result) {
+		return meterRegistry.get("cache.gets").tag("cache", "jwtClaims").tag("result", result).functionCounter()
+				.count();
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.example.real_time_chat_app.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.real_time_chat_app.dto.UserRoomDTO;
+import com.example.real_time_chat_app.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Compares JSON and CBOR payloads for a chat message and a room update: the
+ * cost of encoding each, and of converting the broker's JSON to CBOR per
+ * session as PayloadEncodingInterceptor does. The payload sizes are printed
+ * once at setup. Run the main method on the test classpath, or
+ * {@code org.openjdk.jmh.Main PayloadEncodingBenchmark} after
+ * {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadEncodingBenchmark {
+
+	private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
+
+	private final CBORMapper cborMapper = CBORMapper.builder().findAndAddModules().build();
+
+	private Message message;
+
+	private UserRoomDTO roomUpdate;
+
+	private byte[] messageJson;
+
+	private byte[] roomUpdateJson;
+
+	@Setup
+	public void setup() throws Exception {
+		message = new Message();
+		message.setId("66f1c2a9e4b0a1b2c3d4e5f6");
+		message.setRoomId("66f1c2a9e4b0a1b2c3d4e5f7");
+		message.setSenderId("66f1c2a9e4b0a1b2c3d4e5f8");
+		message.setSenderEmail("user@example.com");
+		message.setSenderFirstName("First");
+		message.setSenderLastName("Last");
+		message.setContent("Hey, are we still meeting at the usual place later today?");
+		message.setTimestamp(LocalDateTime.now());
+
+		roomUpdate = new UserRoomDTO();
+		roomUpdate.setId("66f1c2a9e4b0a1b2c3d4e5f7");
+		roomUpdate.setName("Weekend plans");
+		roomUpdate.setLastMessage(message.getContent());
+		roomUpdate.setLastMessageSenderId(message.getSenderId());
+		roomUpdate.setLastMessageSenderFirstName(message.getSenderFirstName());
+		roomUpdate.setOwner("owner@example.com");
+
+		messageJson = jsonMapper.writeValueAsBytes(message);
+		roomUpdateJson = jsonMapper.writeValueAsBytes(roomUpdate);
+
+		System.out.printf("Message bytes: JSON %d, CBOR %d%n", messageJson.length,
+				cborMapper.writeValueAsBytes(message).length);
+		System.out.printf("Room update bytes: JSON %d, CBOR %d%n", roomUpdateJson.length,
+				cborMapper.writeValueAsBytes(roomUpdate).length);
+	}
+
+	@Benchmark
+	public byte[] jsonMessage() throws Exception {
+		return jsonMapper.writeValueAsBytes(message);
+	}
+
+	@Benchmark
+	public byte[] cborMessage() throws Exception {
+		return cborMapper.writeValueAsBytes(message);
+	}
+
+	@Benchmark
+	public byte[] transcodeMessage() throws Exception {
+		return cborMapper.writeValueAsBytes(jsonMapper.readTree(messageJson));
+	}
+
+	@Benchmark
+	public byte[] jsonRoomUpdate() throws Exception {
+		return jsonMapper.writeValueAsBytes(roomUpdate);
+	}
+
+	@Benchmark
+	public byte[] cborRoomUpdate() throws Exception {
+		return cborMapper.writeValueAsBytes(roomUpdate);
+	}
+
+	@Benchmark
+	public byte[] transcodeRoomUpdate() throws Exception {
+		return cborMapper.writeValueAsBytes(jsonMapper.readTree(roomUpdateJson));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PayloadEncodingBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
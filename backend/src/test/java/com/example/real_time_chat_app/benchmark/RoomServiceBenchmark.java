@@ -0,0 +1,184 @@
+package com.example.real_time_chat_app.benchmark;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.dto.UserRoomDTO;
+import com.example.real_time_chat_app.model.Room;
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.RoomRepository;
+import com.example.real_time_chat_app.repository.UserRepository;
+import com.example.real_time_chat_app.service.RoomService;
+import com.example.real_time_chat_app.service.UserProfileCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares loading a user's room list with one query per room against the
+ * batched queries and the profile cache. Each repository call waits for a fixed
+ * round trip, so the results show how the number of queries grows with the
+ * number of rooms. Run the main method on the test classpath, or
+ * {@code org.openjdk.jmh.Main RoomServiceBenchmark} after
+ * {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomServiceBenchmark {
+
+	private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	@Param({ "1", "10", "50" })
+	private int roomCount;
+
+	private RoomRepository roomRepository;
+
+	private UserRepository userRepository;
+
+	private RoomService roomService;
+
+	private User user;
+
+	@Setup
+	public void setup() {
+		Map<String, Room> rooms = new HashMap<>();
+		Map<String, User> users = new HashMap<>();
+
+		user = createUser("user");
+		user.setRooms(new ArrayList<>());
+		users.put(user.getId(), user);
+
+		for (int i = 0; i < roomCount; i++) {
+			User sender = createUser("sender" + i);
+			users.put(sender.getId(), sender);
+
+			Room room = new Room();
+			room.setId("room" + i);
+			room.setName("Room " + i);
+			room.setLastMessage("Hello");
+			room.setLastMessageSenderId(sender.getId());
+			rooms.put(room.getId(), room);
+			user.getRooms().add(room.getId());
+		}
+
+		roomRepository = mock(RoomRepository.class);
+		when(roomRepository.findById(anyString())).thenAnswer(invocation -> {
+			roundTrip();
+			return Optional.ofNullable(rooms.get(invocation.getArgument(0)));
+		});
+		when(roomRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+			roundTrip();
+			List<Room> found = new ArrayList<>();
+			for (String roomId : invocation.<Iterable<String>>getArgument(0)) {
+				found.add(rooms.get(roomId));
+			}
+			return found;
+		});
+
+		userRepository = mock(UserRepository.class);
+		when(userRepository.findById(anyString())).thenAnswer(invocation -> {
+			roundTrip();
+			return Optional.ofNullable(users.get(invocation.getArgument(0)));
+		});
+		when(userRepository.findProfilesByIdIn(anyCollection())).thenAnswer(invocation -> {
+			roundTrip();
+			List<User> found = new ArrayList<>();
+			for (String userId : invocation.<Iterable<String>>getArgument(0)) {
+				found.add(users.get(userId));
+			}
+			return found;
+		});
+
+		UserProfileCache userProfileCache = new UserProfileCache();
+		ReflectionTestUtils.setField(userProfileCache, "userRepository", userRepository);
+		ReflectionTestUtils.setField(userProfileCache, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(userProfileCache, "maximumSize", 50000L);
+		ReflectionTestUtils.setField(userProfileCache, "expiration", 600L);
+		ReflectionTestUtils.invokeMethod(userProfileCache, "init");
+
+		roomService = new RoomService();
+		ReflectionTestUtils.setField(roomService, "roomRepository", roomRepository);
+		ReflectionTestUtils.setField(roomService, "userRepository", userRepository);
+		ReflectionTestUtils.setField(roomService, "userProfileCache", userProfileCache);
+	}
+
+	/**
+	 * The previous room list: the user is loaded twice, then each room and the
+	 * sender of its last message are loaded one at a time.
+	 */
+	@Benchmark
+	public void perRoomQueries(Blackhole blackhole) {
+		List<UserRoomDTO> userRooms = new ArrayList<>();
+
+		if (userRepository.findById(user.getId()).get().getRooms() != null) {
+			for (String roomId : userRepository.findById(user.getId()).get().getRooms()) {
+				Room room = roomRepository.findById(roomId).orElse(null);
+				UserRoomDTO userRoom = roomService.getUserRoom(room);
+
+				if (room.getLastMessageSenderId() != null) {
+					User sender = userRepository.findById(room.getLastMessageSenderId()).get();
+					userRoom.setLastMessageSenderFirstName(sender.getFirstName());
+				}
+				userRooms.add(userRoom);
+			}
+		}
+		blackhole.consume(userRooms);
+	}
+
+	/**
+	 * The current room list: the rooms are loaded in one query and the senders
+	 * come from the profile cache, which is warm after the first invocation.
+	 */
+	@Benchmark
+	public void batchedQueries(Blackhole blackhole) {
+		blackhole.consume(roomService.getUserRooms(user));
+	}
+
+	private static User createUser(String id) {
+		User user = new User();
+		user.setId(id);
+		user.setFirstName("First " + id);
+		user.setEmail(id + "@example.com");
+		return user;
+	}
+
+	private static void roundTrip() {
+		LockSupport.parkNanos(ROUND_TRIP_NANOS);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RoomServiceBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.example.real_time_chat_app.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+import org.springframework.web.socket.sockjs.frame.SockJsMessageCodec;
+
+import com.example.real_time_chat_app.model.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Compares the cost of sending a chat message to every member of a room over
+ * the plain WebSocket endpoint and over SockJS. Both encode the STOMP frame per
+ * session; SockJS also converts it to a string and wraps it in an escaped JSON
+ * array. The frame sizes are printed once at setup. Run the main method on the
+ * test classpath, or {@code org.openjdk.jmh.Main WebSocketTransportBenchmark}
+ * after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketTransportBenchmark {
+
+	// Room members receiving each message, up to the room limit
+	@Param({ "10", "50" })
+	private int fanOut;
+
+	private final StompEncoder stompEncoder = new StompEncoder();
+
+	private final SockJsMessageCodec sockJsMessageCodec = new Jackson2SockJsMessageCodec();
+
+	private org.springframework.messaging.Message<byte[]> stompMessage;
+
+	@Setup
+	public void setup() throws Exception {
+		Message message = new Message();
+		message.setId("66f1c2a9e4b0a1b2c3d4e5f6");
+		message.setRoomId("66f1c2a9e4b0a1b2c3d4e5f7");
+		message.setSenderId("66f1c2a9e4b0a1b2c3d4e5f8");
+		message.setSenderEmail("user@example.com");
+		message.setSenderFirstName("First");
+		message.setSenderLastName("Last");
+		message.setContent("Hey, are we still meeting at \"the usual place\" later today?");
+		message.setTimestamp(LocalDateTime.now());
+
+		byte[] payload = new ObjectMapper().registerModule(new JavaTimeModule()).writeValueAsBytes(message);
+
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		accessor.setDestination("/topic/room/" + message.getRoomId());
+		accessor.setSubscriptionId("sub-3");
+		accessor.setMessageId("f1e2d3c4-0000-0000-0000-000000000001");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		stompMessage = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+
+		int rawBytes = rawWebSocketFrame().getPayloadLength();
+		int sockJsBytes = sockJsFrame().getPayloadLength();
+		System.out.printf("Frame bytes: WebSocket %d, SockJS %d (+%.0f%%)%n", rawBytes, sockJsBytes,
+				100.0 * (sockJsBytes - rawBytes) / rawBytes);
+	}
+
+	@Benchmark
+	public void rawWebSocket(Blackhole blackhole) {
+		for (int i = 0; i < fanOut; i++) {
+			blackhole.consume(rawWebSocketFrame());
+		}
+	}
+
+	@Benchmark
+	public void sockJs(Blackhole blackhole) {
+		for (int i = 0; i < fanOut; i++) {
+			blackhole.consume(sockJsFrame());
+		}
+	}
+
+	/** What StompSubProtocolHandler sends to a plain WebSocket session. */
+	private TextMessage rawWebSocketFrame() {
+		return new TextMessage(stompEncoder.encode(stompMessage));
+	}
+
+	/** What a SockJS session sends for the same STOMP frame. */
+	private TextMessage sockJsFrame() {
+		String frame = new String(stompEncoder.encode(stompMessage), StandardCharsets.UTF_8);
+		return new TextMessage(sockJsMessageCodec.encode(frame));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(WebSocketTransportBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.example.real_time_chat_app.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Checks that the messages of each session are handled in order on the default
+ * platform thread pool and on virtual threads, with handlers that block like a
+ * database call. The throughput of the two is compared in
+ * ChannelExecutorBenchmark.
+ */
+class ChannelExecutorOrderTest {
+
+	private static final int SESSIONS = 200;
+
+	private static final int MESSAGES_PER_SESSION = 20;
+
+	private static final long BLOCKING_MILLIS = 2;
+
+	@Test
+	void platformThreadsHandleMessagesOfASessionInOrder() throws Exception {
+		// The same pool size Spring uses for the channels by default
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.initialize();
+
+		assertTrue(run(executor), "Platform thread messages were handled out of order");
+		executor.shutdown();
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void virtualThreadsHandleMessagesOfASessionInOrder() throws Exception {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("virtual-");
+		executor.setVirtualThreads(true);
+
+		assertTrue(run(executor), "Virtual thread messages were handled out of order");
+	}
+
+	/**
+	 * Sends the messages of every session through its own ordered channel, as
+	 * Spring does per WebSocket session, and waits for all of them to be handled.
+	 *
+	 * @return true if every session's messages were handled in order
+	 */
+	private boolean run(TaskExecutor executor) throws InterruptedException {
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+		OrderedMessageChannelDecorator.configureInterceptor(channel, true);
+
+		List<OrderedMessageChannelDecorator> sessionChannels = new ArrayList<>();
+		for (int session = 0; session < SESSIONS; session++) {
+			sessionChannels.add(new OrderedMessageChannelDecorator(channel,
+					LogFactory.getLog(ChannelExecutorOrderTest.class)));
+		}
+
+		CountDownLatch handled = new CountDownLatch(SESSIONS * MESSAGES_PER_SESSION);
+		Map<String, Integer> lastSequences = new ConcurrentHashMap<>();
+		AtomicBoolean inOrder = new AtomicBoolean(true);
+
+		channel.subscribe(message -> {
+			int sequence = (Integer) message.getPayload();
+			Integer previous = lastSequences.put(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+					sequence);
+
+			if (previous != null && previous != sequence - 1) {
+				inOrder.set(false);
+			}
+
+			try {
+				Thread.sleep(BLOCKING_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			handled.countDown();
+		});
+
+		for (int sequence = 0; sequence < MESSAGES_PER_SESSION; sequence++) {
+			for (int session = 0; session < SESSIONS; session++) {
+				sessionChannels.get(session).send(createMessage("session" + session, sequence));
+			}
+		}
+		assertTrue(handled.await(60, TimeUnit.SECONDS));
+		return inOrder.get();
+	}
+
+	private Message<Integer> createMessage(String sessionId, int sequence) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setSessionId(sessionId);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(sequence, accessor.getMessageHeaders());
+	}
+
+}
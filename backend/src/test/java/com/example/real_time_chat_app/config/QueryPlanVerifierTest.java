@@ -0,0 +1,267 @@
+package com.example.real_time_chat_app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.config.QueryPlanVerifier.QueryShape;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.InvitationRepository;
+import com.example.real_time_chat_app.repository.MessageCleanupTaskRepository;
+import com.example.real_time_chat_app.repository.MessageRepository;
+import com.example.real_time_chat_app.repository.MessageSequenceRepository;
+import com.example.real_time_chat_app.repository.MongoContainerTest;
+import com.example.real_time_chat_app.repository.RevokedTokenRepository;
+import com.example.real_time_chat_app.repository.RoomRepository;
+import com.example.real_time_chat_app.repository.UserRepository;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+/**
+ * Runs the query plan verifier against the indexes created from the models,
+ * and checks its query shapes against the queries the repository methods send.
+ */
+class QueryPlanVerifierTest extends MongoContainerTest {
+
+	private static final List<Class<?>> REPOSITORIES = List.of(MessageRepository.class,
+			MessageSequenceRepository.class, RoomRepository.class, UserRepository.class,
+			MessageCleanupTaskRepository.class, InvitationRepository.class, RevokedTokenRepository.class);
+
+	// Queries sent to the database with their command names
+	private static final List<Map.Entry<String, BsonDocument>> commands = new CopyOnWriteArrayList<>();
+
+	@TestConfiguration
+	static class CommandCaptureConfiguration {
+
+		@Bean
+		MongoClientSettingsBuilderCustomizer commandCapture() {
+			return builder -> builder.addCommandListener(new CommandListener() {
+				@Override
+				public void commandStarted(CommandStartedEvent event) {
+					if (Set.of("find", "update", "findAndModify", "delete", "count", "aggregate")
+							.contains(event.getCommandName())) {
+						BsonDocument command = BsonDocument.parse(event.getCommand().toJson());
+						commands.add(Map.entry(event.getCommandName(), command));
+					}
+				}
+			});
+		}
+	}
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private MongoMappingContext mongoMappingContext;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	@Autowired
+	private MessageSequenceRepository messageSequenceRepository;
+
+	@Autowired
+	private RoomRepository roomRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private MessageCleanupTaskRepository messageCleanupTaskRepository;
+
+	@Autowired
+	private InvitationRepository invitationRepository;
+
+	@Autowired
+	private RevokedTokenRepository revokedTokenRepository;
+
+	private QueryPlanVerifier queryPlanVerifier;
+
+	@BeforeEach
+	void setup() {
+		queryPlanVerifier = new QueryPlanVerifier();
+		ReflectionTestUtils.setField(queryPlanVerifier, "mongoTemplate", mongoTemplate);
+	}
+
+	@Test
+	void everyQueryUsesAnIndex() {
+		queryPlanVerifier.run(null);
+	}
+
+	@Test
+	void missingIndexesAreReported() {
+		mongoTemplate.indexOps(Message.class).dropIndex("roomId_sequence");
+
+		try {
+			IllegalStateException e = assertThrows(IllegalStateException.class, () -> queryPlanVerifier.run(null));
+			assertTrue(e.getMessage().contains("MessageRepository.findByRoomIdOrderBySequenceDesc"), e.getMessage());
+		} finally {
+			for (IndexDefinition index : IndexResolver.create(mongoMappingContext).resolveIndexFor(Message.class)) {
+				mongoTemplate.indexOps(Message.class).ensureIndex(index);
+			}
+		}
+	}
+
+	/**
+	 * Each shape must be the query its repository method sends, apart from the
+	 * values, so the verifier checks the queries that actually run.
+	 */
+	@Test
+	void shapesMatchTheQueriesOfTheRepositoryMethods() {
+		Map<String, QueryShape> shapes = new LinkedHashMap<>();
+		for (QueryShape shape : queryPlanVerifier.getQueryShapes()) {
+			shapes.put(shape.name, shape);
+		}
+
+		String roomId = new ObjectId().toHexString();
+		String userId = new ObjectId().toHexString();
+		Message message = new Message();
+		message.setId(new ObjectId().toHexString());
+		message.setRoomId(roomId);
+		message.setSequence(5L);
+
+		Map<String, Runnable> calls = new LinkedHashMap<>();
+		calls.put("MessageRepository.findByRoomIdOrderBySequenceDesc",
+				() -> messageRepository.findByRoomIdOrderBySequenceDesc(roomId, PageRequest.of(0, 10)));
+		calls.put("MessageRepository.findByRoomIdAndSequenceLessThanOrderBySequenceDesc",
+				() -> messageRepository.findByRoomIdAndSequenceLessThanOrderBySequenceDesc(roomId, 5,
+						PageRequest.of(0, 10)));
+		calls.put("MessageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc",
+				() -> messageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc(roomId, 5,
+						PageRequest.of(0, 10)));
+		calls.put("MessageRepository.findById", () -> messageRepository.findById(message.getId()));
+		calls.put("MessageSequenceRepository.allocate", () -> messageSequenceRepository.allocate(roomId, 1));
+		calls.put("MessageSequenceRepository.markDeleted", () -> messageSequenceRepository.markDeleted(roomId));
+		calls.put("RoomRepository.findById", () -> roomRepository.findById(roomId));
+		calls.put("RoomRepository.findAllById", () -> roomRepository.findAllById(List.of(roomId, userId)));
+		calls.put("RoomRepository.addUser", () -> roomRepository.addUser(roomId, userId, 100));
+		calls.put("RoomRepository.removeUser", () -> roomRepository.removeUser(roomId, userId));
+		calls.put("RoomRepository.rename", () -> roomRepository.rename(roomId, userId, "Room"));
+		calls.put("RoomRepository.updateLastMessage", () -> roomRepository.updateLastMessage(message));
+		calls.put("UserRepository.findByEmail", () -> userRepository.findByEmail("user@example.com"));
+		calls.put("UserRepository.findProfilesByIdIn", () -> userRepository.findProfilesByIdIn(List.of(userId)));
+		calls.put("UserRepository.addRoom", () -> userRepository.addRoom(userId, roomId, 50));
+		calls.put("UserRepository.removeRoom", () -> userRepository.removeRoom(userId, roomId));
+		calls.put("UserRepository.removeRoomFromUsers",
+				() -> userRepository.removeRoomFromUsers(List.of(userId), roomId));
+		calls.put("UserRepository.updatePassword", () -> userRepository.updatePassword("user@example.com", "hash"));
+		calls.put("MessageCleanupTaskRepository.findFirstByCompletedFalseOrderByCreatedAtAsc",
+				() -> messageCleanupTaskRepository.findFirstByCompletedFalseOrderByCreatedAtAsc());
+		calls.put("InvitationRepository.findByToken", () -> invitationRepository.findByToken("token"));
+		calls.put("RevokedTokenRepository.existsById", () -> revokedTokenRepository.existsById("tokenId"));
+		calls.put("RevokedTokenRepository.findByRevokedAtGreaterThanEqual",
+				() -> revokedTokenRepository.findByRevokedAtGreaterThanEqual(new Date()));
+
+		for (Map.Entry<String, Runnable> call : calls.entrySet()) {
+			QueryShape shape = shapes.get(call.getKey());
+			assertNotNull(shape, "No query shape for " + call.getKey());
+
+			commands.clear();
+			call.getValue().run();
+
+			assertEquals(1, commands.size(), call.getKey() + " sent " + commands);
+			Map.Entry<String, BsonDocument> command = commands.get(0);
+			assertEquals(mongoTemplate.getCollectionName(shape.entityClass),
+					command.getValue().getString(command.getKey()).getValue(), call.getKey());
+			assertEquals(normalize(shape.filter), normalize(filter(command)), call.getKey());
+			assertEquals(shape.sort, sort(command), call.getKey());
+		}
+
+		// Every query method of a repository must be called above
+		Set<String> methods = new TreeSet<>();
+		for (Class<?> repository : REPOSITORIES) {
+			for (Class<?> type : withCustomInterfaces(repository)) {
+				for (Method method : type.getDeclaredMethods()) {
+					methods.add(repository.getSimpleName() + "." + method.getName());
+				}
+			}
+		}
+		methods.removeAll(calls.keySet());
+		assertTrue(methods.isEmpty(), "Repository methods without a checked query shape: " + methods);
+	}
+
+	private static List<Class<?>> withCustomInterfaces(Class<?> repository) {
+		List<Class<?>> types = new ArrayList<>();
+		types.add(repository);
+		for (Class<?> parent : repository.getInterfaces()) {
+			if (parent.getPackage().equals(repository.getPackage())) {
+				types.add(parent);
+			}
+		}
+		return types;
+	}
+
+	private static Document filter(Map.Entry<String, BsonDocument> command) {
+		BsonDocument body = command.getValue();
+		BsonDocument filter = switch (command.getKey()) {
+			case "find" -> body.getDocument("filter", new BsonDocument());
+			case "findAndModify" -> body.getDocument("query", new BsonDocument());
+			case "update" -> body.getArray("updates").get(0).asDocument().getDocument("q");
+			case "delete" -> body.getArray("deletes").get(0).asDocument().getDocument("q");
+			case "count" -> body.getDocument("query", new BsonDocument());
+			default -> body.getArray("pipeline").get(0).asDocument().getDocument("$match");
+		};
+		return toDocument(filter);
+	}
+
+	private static Document sort(Map.Entry<String, BsonDocument> command) {
+		BsonDocument body = command.getValue();
+		return body.containsKey("sort") ? toDocument(body.getDocument("sort")) : new Document();
+	}
+
+	private static Document toDocument(BsonDocument document) {
+		return new DocumentCodec().decode(document.asBsonReader(), DecoderContext.builder().build());
+	}
+
+	/**
+	 * Replaces the values of a filter, so filters only compare by fields and
+	 * operators. Booleans are kept since $exists changes which index is used, and
+	 * array positions in field names are replaced.
+	 */
+	private static Object normalize(Object value) {
+		Function<String, String> key = name -> name.replaceAll("\\.\\d+", ".N");
+
+		if (value instanceof Document document) {
+			Document normalized = new Document();
+			document.forEach((name, child) -> normalized.put(key.apply(name),
+					name.equals("$in") ? "?" : normalize(child)));
+			return normalized;
+		} else if (value instanceof List<?> list) {
+			return list.stream().map(QueryPlanVerifierTest::normalize).toList();
+		} else if (value instanceof Boolean) {
+			return value;
+		}
+		return "?";
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.example.real_time_chat_app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+
+import com.example.real_time_chat_app.util.CompressionHandshakeHandler;
+import com.example.real_time_chat_app.util.CompressionMetrics;
+import com.example.real_time_chat_app.util.JwtChannelInterceptor;
+import com.example.real_time_chat_app.util.JwtHandshakeInterceptor;
+import com.example.real_time_chat_app.util.PayloadEncodingInterceptor;
+
+/**
+ * Checks that enabling virtual threads moves the inbound and outbound channels
+ * onto virtual threads.
+ */
+@SpringJUnitWebConfig({ WebSocketConfig.class, PayloadEncodingInterceptor.class })
+@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class WebSocketConfigTest {
+
+	@MockBean
+	private JwtChannelInterceptor jwtChannelInterceptor;
+
+	@MockBean
+	private JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+	@MockBean
+	private CompressionHandshakeHandler compressionHandshakeHandler;
+
+	// Decorating the WebSocket handler is needed to build the endpoints
+	@MockBean(answer = Answers.CALLS_REAL_METHODS)
+	private CompressionMetrics compressionMetrics;
+
+	@Autowired
+	@Qualifier("clientInboundChannel")
+	private ExecutorSubscribableChannel clientInboundChannel;
+
+	@Autowired
+	@Qualifier("clientOutboundChannel")
+	private ExecutorSubscribableChannel clientOutboundChannel;
+
+	@Test
+	void channelsRunOnVirtualThreads() throws Exception {
+		assertRunsOnVirtualThread(clientInboundChannel.getExecutor(), "ws-inbound-");
+		assertRunsOnVirtualThread(clientOutboundChannel.getExecutor(), "ws-outbound-");
+	}
+
+	private void assertRunsOnVirtualThread(Executor executor, String threadNamePrefix) throws Exception {
+		assertInstanceOf(SimpleAsyncTaskExecutor.class, executor);
+
+		CompletableFuture<Thread> thread = new CompletableFuture<>();
+		executor.execute(() -> thread.complete(Thread.currentThread()));
+		Thread handlerThread = thread.get(5, TimeUnit.SECONDS);
+
+		// Thread.isVirtual is not available when compiling for Java 17
+		assertEquals(true, Thread.class.getMethod("isVirtual").invoke(handlerThread));
+		assertTrue(handlerThread.getName().startsWith(threadNamePrefix));
+	}
+
+}
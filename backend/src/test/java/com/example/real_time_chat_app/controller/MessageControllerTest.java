@@ -0,0 +1,111 @@
+package com.example.real_time_chat_app.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.real_time_chat_app.repository.MessageRepository;
+import com.example.real_time_chat_app.service.MessageService;
+import com.example.real_time_chat_app.service.RecentMessageBuffer;
+import com.example.real_time_chat_app.service.UserService;
+
+/**
+ * Checks the message history endpoint with the real message service and a
+ * stubbed repository.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageControllerTest {
+
+	private static final String EMAIL = "user@example.com";
+
+	private static final Principal PRINCIPAL = () -> EMAIL;
+
+	@Mock
+	private UserService userService;
+
+	@Mock
+	private MessageRepository messageRepository;
+
+	@Mock
+	private RecentMessageBuffer recentMessageBuffer;
+
+	@InjectMocks
+	private MessageController messageController;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setup() {
+		MessageService messageService = new MessageService();
+		ReflectionTestUtils.setField(messageService, "messageRepository", messageRepository);
+		ReflectionTestUtils.setField(messageService, "recentMessageBuffer", recentMessageBuffer);
+		ReflectionTestUtils.setField(messageService, "defaultHistoryLimit", 50);
+		ReflectionTestUtils.setField(messageService, "maxHistoryLimit", 200);
+		ReflectionTestUtils.setField(messageController, "messageService", messageService);
+
+		lenient().when(userService.checkIfInRoom("room1", EMAIL)).thenReturn(true);
+		mockMvc = MockMvcBuilders.standaloneSetup(messageController).build();
+	}
+
+	@Test
+	void clampsTheLimitOfAMembersPage() throws Exception {
+		when(recentMessageBuffer.getOlder("room1", null, 201)).thenReturn(null);
+		when(messageRepository.findByRoomIdOrderBySequenceDesc("room1", PageRequest.of(0, 201)))
+				.thenReturn(List.of());
+
+		mockMvc.perform(get("/api/messages/room1/history").param("limit", "1000").principal(PRINCIPAL))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.messages").isEmpty());
+	}
+
+	@Test
+	void rejectsBothCursors() throws Exception {
+		mockMvc.perform(get("/api/messages/room1/history").param("before", "MTA").param("after", "NQ")
+				.principal(PRINCIPAL))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("Only one of before or after can be set."));
+
+		verify(userService, never()).checkIfInRoom(anyString(), anyString());
+		verify(recentMessageBuffer, never()).getOlder(anyString(), any(), anyInt());
+	}
+
+	@Test
+	void rejectsMalformedCursors() throws Exception {
+		mockMvc.perform(get("/api/messages/room1/history").param("before", "!!!").principal(PRINCIPAL))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("Invalid cursor."));
+		mockMvc.perform(get("/api/messages/room1/history").param("after", "YWJj").principal(PRINCIPAL))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("Invalid cursor."));
+	}
+
+	@Test
+	void rejectsUsersOutsideTheRoom() throws Exception {
+		mockMvc.perform(get("/api/messages/room2/history").principal(PRINCIPAL))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string("Failed to get messages."));
+	}
+
+}
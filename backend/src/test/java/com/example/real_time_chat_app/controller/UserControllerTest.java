@@ -0,0 +1,288 @@
+package com.example.real_time_chat_app.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.security.Principal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.real_time_chat_app.dto.LoginDTO;
+import com.example.real_time_chat_app.dto.UpdateProfileRequestDTO;
+import com.example.real_time_chat_app.exception.GlobalExceptionHandler;
+import com.example.real_time_chat_app.model.RevokedToken;
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.RevokedTokenRepository;
+import com.example.real_time_chat_app.repository.UserRepository;
+import com.example.real_time_chat_app.service.CustomUserDetailsService;
+import com.example.real_time_chat_app.service.RoomEventPublisher;
+import com.example.real_time_chat_app.service.TokenRevocationService;
+import com.example.real_time_chat_app.service.UserService;
+import com.example.real_time_chat_app.util.AuthenticationResponse;
+import com.example.real_time_chat_app.util.BlockingPassword;
+import com.example.real_time_chat_app.util.BoundedBCryptPasswordEncoder;
+import com.example.real_time_chat_app.util.JwtAuthenticationResolver;
+import com.example.real_time_chat_app.util.JwtUtil;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks logging in, logging out and saving the profile with the real token,
+ * revocation and password classes and stubbed repositories.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserControllerTest {
+
+	private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	private static final String EMAIL = "user@example.com";
+
+	private static final String USER_ID = "user1";
+
+	@Mock
+	private UserService userService;
+
+	@Mock
+	private RoomEventPublisher roomEventPublisher;
+
+	@Mock
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@InjectMocks
+	private UserController userController;
+
+	private JwtUtil jwtUtil;
+
+	private JwtAuthenticationResolver jwtAuthenticationResolver;
+
+	private final Map<String, RevokedToken> stored = new HashMap<>();
+
+	@BeforeEach
+	void setup() {
+		lenient().when(revokedTokenRepository.save(any(RevokedToken.class))).thenAnswer(invocation -> {
+			RevokedToken revokedToken = invocation.getArgument(0);
+			stored.put(revokedToken.getTokenId(), revokedToken);
+			return revokedToken;
+		});
+		lenient().when(revokedTokenRepository.existsById(anyString()))
+				.thenAnswer(invocation -> stored.containsKey(invocation.<String>getArgument(0)));
+
+		jwtUtil = new JwtUtil();
+		ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+		ReflectionTestUtils.setField(jwtUtil, "expiration", 3600L);
+		ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaximumSize", 1000L);
+		ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+		TokenRevocationService tokenRevocationService = new TokenRevocationService();
+		ReflectionTestUtils.setField(tokenRevocationService, "revokedTokenRepository", revokedTokenRepository);
+		ReflectionTestUtils.setField(tokenRevocationService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(tokenRevocationService, "expiration", 3600L);
+		ReflectionTestUtils.setField(tokenRevocationService, "expectedRevocations", 1000L);
+		ReflectionTestUtils.setField(tokenRevocationService, "falsePositiveProbability", 0.001);
+		ReflectionTestUtils.invokeMethod(tokenRevocationService, "init");
+
+		jwtAuthenticationResolver = new JwtAuthenticationResolver();
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "jwtUtil", jwtUtil);
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "tokenRevocationService", tokenRevocationService);
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "authenticationMode",
+				JwtAuthenticationResolver.CLAIMS_MODE);
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "userDetailsCacheMaximumSize", 1000L);
+		ReflectionTestUtils.setField(jwtAuthenticationResolver, "userDetailsCacheExpiration", 60L);
+		ReflectionTestUtils.invokeMethod(jwtAuthenticationResolver, "init");
+
+		ReflectionTestUtils.setField(userController, "jwtUtil", jwtUtil);
+		ReflectionTestUtils.setField(userController, "tokenRevocationService", tokenRevocationService);
+	}
+
+	@Test
+	void logoutRevokesOnlyTheToken() {
+		String token = jwtUtil.generateToken(EMAIL, "USER");
+		String otherToken = jwtUtil.generateToken(EMAIL, "USER");
+		assertNotNull(jwtAuthenticationResolver.loadUserDetails(token));
+
+		userController.logout("Bearer " + token);
+
+		assertNull(jwtAuthenticationResolver.loadUserDetails(token));
+		assertNotNull(jwtAuthenticationResolver.loadUserDetails(otherToken));
+	}
+
+	@Test
+	void savingTheProfileRevokesTheTokensOfOtherSessions() {
+		String otherSessionToken = tokenIssuedAt(new Date(System.currentTimeMillis() - 60000));
+		String token = jwtUtil.generateToken(EMAIL, "USER");
+
+		User user = new User();
+		user.setId(USER_ID);
+		user.setEmail(EMAIL);
+		when(userService.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+		when(userService.findById(USER_ID)).thenReturn(Optional.of(user));
+		when(userService.checkPasswordMatch("password")).thenReturn(true);
+		when(userService.updateUser(any(User.class), eq("password")))
+				.thenAnswer(invocation -> jwtUtil.generateToken(EMAIL, "USER"));
+
+		UpdateProfileRequestDTO profile = new UpdateProfileRequestDTO();
+		profile.setId(USER_ID);
+		profile.setEmail(EMAIL);
+		profile.setFirstName("First");
+		profile.setLastName("Last");
+		profile.setCurrentPassword("password");
+		profile.setPassword("");
+		Principal principal = () -> EMAIL;
+
+		ResponseEntity<?> response = userController.saveUserProfile(profile, principal, "Bearer " + token);
+
+		assertEquals(200, response.getStatusCode().value());
+		String newToken = ((AuthenticationResponse) response.getBody()).getAccessToken();
+		assertNull(jwtAuthenticationResolver.loadUserDetails(token));
+		assertNull(jwtAuthenticationResolver.loadUserDetails(otherSessionToken));
+		assertNotNull(jwtAuthenticationResolver.loadUserDetails(newToken));
+	}
+
+	@Test
+	void loginRehashesPasswordsWithAnotherWorkFactor() throws Exception {
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 2,
+				new SimpleMeterRegistry())) {
+			useAuthentication(encoder, new BCryptPasswordEncoder(5).encode("password"));
+			when(userRepository.updatePassword(eq(EMAIL), anyString())).thenReturn(true);
+
+			ResponseEntity<?> response = userController.login(login());
+
+			assertEquals(200, response.getStatusCode().value());
+			verify(userRepository).updatePassword(eq(EMAIL),
+					argThat(hash -> hash.startsWith("$2a$04$") && encoder.matches("password", hash)));
+		}
+	}
+
+	@Test
+	void loginKeepsPasswordsWithTheSameWorkFactor() throws Exception {
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 2,
+				new SimpleMeterRegistry())) {
+			useAuthentication(encoder, new BCryptPasswordEncoder(4).encode("password"));
+
+			userController.login(login());
+
+			verify(userRepository, never()).updatePassword(anyString(), anyString());
+		}
+	}
+
+	@Test
+	void loginReturnsTooManyRequestsWhenHashingIsSaturated() throws Exception {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 1, meterRegistry)) {
+			useAuthentication(encoder, encoder.encode("password"));
+			MockMvc mockMvc = MockMvcBuilders.standaloneSetup(userController)
+					.setControllerAdvice(new GlobalExceptionHandler())
+					.build();
+
+			// One hash holds the only thread and another fills the queue
+			BlockingPassword running = new BlockingPassword(release);
+			CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> encoder.encode(running));
+			assertTrue(running.started.await(5, TimeUnit.SECONDS));
+			CompletableFuture<String> queued = CompletableFuture
+					.supplyAsync(() -> encoder.encode(new BlockingPassword(release)));
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (meterRegistry.get("security.password.hash.queue").gauge().value() < 1) {
+				assertTrue(System.nanoTime() < deadline, "Hash was not queued");
+				Thread.sleep(5);
+			}
+
+			mockMvc.perform(post("/api/users/login")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"email\": \"" + EMAIL + "\", \"password\": \"password\"}"))
+					.andExpect(status().isTooManyRequests());
+
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			queued.get(5, TimeUnit.SECONDS);
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * Authenticates logins like the security configuration, against a stored
+	 * user with the given password hash.
+	 */
+	private void useAuthentication(BCryptPasswordEncoder encoder, String storedHash) {
+		User user = new User();
+		user.setId(USER_ID);
+		user.setEmail(EMAIL);
+		user.setPassword(storedHash);
+		user.setRole("USER");
+		lenient().when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+		CustomUserDetailsService userDetailsService = new CustomUserDetailsService();
+		ReflectionTestUtils.setField(userDetailsService, "userRepository", userRepository);
+
+		DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+		provider.setUserDetailsService(userDetailsService);
+		provider.setUserDetailsPasswordService(userDetailsService);
+
+		ReflectionTestUtils.setField(userController, "userDetailsService", userDetailsService);
+		ReflectionTestUtils.setField(userController, "authenticationManager", new ProviderManager(provider));
+	}
+
+	private static LoginDTO login() {
+		LoginDTO login = new LoginDTO();
+		login.setEmail(EMAIL);
+		login.setPassword("password");
+		return login;
+	}
+
+	private static String tokenIssuedAt(Date issuedAt) {
+		SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes());
+		return Jwts.builder()
+				.claim("role", "USER")
+				.id(UUID.randomUUID().toString())
+				.subject(EMAIL)
+				.issuedAt(issuedAt)
+				.expiration(new Date(issuedAt.getTime() + 3600000))
+				.signWith(key, Jwts.SIG.HS512)
+				.compact();
+	}
+
+}
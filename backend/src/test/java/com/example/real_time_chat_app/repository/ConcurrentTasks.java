@@ -0,0 +1,51 @@
+package com.example.real_time_chat_app.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Runs many tasks against the database at the same time. */
+final class ConcurrentTasks {
+
+	private ConcurrentTasks() {
+	}
+
+	/**
+	 * Starts a number of tasks together and waits for all of them.
+	 *
+	 * @param count the number of tasks
+	 * @param task  the task, given the index of each run
+	 * @return the results in the order of the indexes
+	 */
+	static <T> List<T> run(int count, Task<T> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<T>> futures = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			int index = i;
+			Callable<T> callable = () -> {
+				start.await();
+				return task.run(index);
+			};
+			futures.add(executor.submit(callable));
+		}
+
+		start.countDown();
+		List<T> results = new ArrayList<>();
+		for (Future<T> future : futures) {
+			results.add(future.get());
+		}
+		executor.shutdown();
+		return results;
+	}
+
+	interface Task<T> {
+		T run(int index) throws Exception;
+	}
+
+}
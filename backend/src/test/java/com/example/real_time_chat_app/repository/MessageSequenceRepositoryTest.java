@@ -0,0 +1,118 @@
+package com.example.real_time_chat_app.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.service.MessageSequencer;
+
+@Import(MessageSequencer.class)
+class MessageSequenceRepositoryTest extends MongoContainerTest {
+
+	@Autowired
+	private MessageSequenceRepository messageSequenceRepository;
+
+	@Autowired
+	private MessageSequencer messageSequencer;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	/**
+	 * Single messages and batches written to one room at the same time should get
+	 * every sequence number exactly once.
+	 */
+	@Test
+	void concurrentWritersGetUniqueDenseSequences() throws Exception {
+		String roomId = new ObjectId().toHexString();
+		int writers = 300;
+
+		List<List<Long>> results = ConcurrentTasks.run(writers, writer -> {
+			int count = writer % 3 == 0 ? 5 : 1;
+			long first = messageSequenceRepository.allocate(roomId, count);
+
+			List<Long> sequences = new ArrayList<>();
+			for (long sequence = first; sequence < first + count; sequence++) {
+				sequences.add(sequence);
+			}
+			return sequences;
+		});
+
+		List<Long> sequences = new ArrayList<>();
+		results.forEach(sequences::addAll);
+		sequences.sort(null);
+
+		int expectedCount = writers / 3 * 5 + (writers - writers / 3);
+		assertEquals(expectedCount, sequences.size());
+		for (int i = 0; i < sequences.size(); i++) {
+			assertEquals(i + 1, sequences.get(i));
+		}
+	}
+
+	/**
+	 * Batches sequenced at the same time should number the messages of each room
+	 * in list order, without sharing a number between batches.
+	 */
+	@Test
+	void concurrentBatchesNumberEachRoomInOrder() throws Exception {
+		List<String> roomIds = List.of(new ObjectId().toHexString(), new ObjectId().toHexString());
+
+		List<List<Message>> batches = ConcurrentTasks.run(100, index -> {
+			List<Message> batch = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				batch.add(createMessage(roomIds.get(i % 2), null));
+			}
+			messageSequencer.assign(batch);
+			return batch;
+		});
+
+		for (String roomId : roomIds) {
+			List<Long> sequences = new ArrayList<>();
+
+			for (List<Message> batch : batches) {
+				List<Long> batchSequences = batch.stream()
+						.filter(message -> message.getRoomId().equals(roomId))
+						.map(Message::getSequence)
+						.toList();
+				assertEquals(List.of(batchSequences.get(0), batchSequences.get(0) + 1, batchSequences.get(0) + 2),
+						batchSequences);
+				sequences.addAll(batchSequences);
+			}
+
+			sequences.sort(null);
+			for (int i = 0; i < sequences.size(); i++) {
+				assertEquals(i + 1, sequences.get(i));
+			}
+		}
+	}
+
+	@Test
+	void messagesInARoomCannotShareASequence() {
+		String roomId = new ObjectId().toHexString();
+		mongoTemplate.insert(createMessage(roomId, 1L));
+		mongoTemplate.insert(createMessage(new ObjectId().toHexString(), 1L));
+		mongoTemplate.insert(createMessage(roomId, null));
+		mongoTemplate.insert(createMessage(roomId, null));
+
+		assertThrows(DuplicateKeyException.class, () -> mongoTemplate.insert(createMessage(roomId, 1L)));
+	}
+
+	private Message createMessage(String roomId, Long sequence) {
+		Message message = new Message();
+		message.setRoomId(roomId);
+		message.setSequence(sequence);
+		message.setContent("Hello");
+		return message;
+	}
+
+}
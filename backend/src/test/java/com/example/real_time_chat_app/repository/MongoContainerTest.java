@@ -0,0 +1,21 @@
+package com.example.real_time_chat_app.repository;
+
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Runs repository tests against a real MongoDB in a container. The tests are
+ * skipped when Docker is not available.
+ */
+@DataMongoTest(properties = "spring.data.mongodb.database=test")
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MongoContainerTest {
+
+	@Container
+	@ServiceConnection
+	static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:7.0");
+
+}
@@ -0,0 +1,76 @@
+package com.example.real_time_chat_app.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.example.real_time_chat_app.model.Room;
+
+class RoomRepositoryTest extends MongoContainerTest {
+
+	@Autowired
+	private RoomRepository roomRepository;
+
+	@Test
+	void concurrentJoinsAllPersist() throws Exception {
+		int joins = 300;
+		Room room = createRoom();
+
+		List<Boolean> results = ConcurrentTasks.run(joins,
+				index -> roomRepository.addUser(room.getId(), new ObjectId().toHexString(), joins));
+
+		Room savedRoom = roomRepository.findById(room.getId()).get();
+		assertTrue(results.stream().allMatch(Boolean::booleanValue));
+		assertEquals(joins, savedRoom.getUsers().size());
+		assertEquals(joins, new HashSet<>(savedRoom.getUsers()).size());
+		assertEquals(joins, savedRoom.getAllUsers().size());
+	}
+
+	@Test
+	void concurrentJoinsDoNotExceedMaximumUsers() throws Exception {
+		int maxUsers = 50;
+		Room room = createRoom();
+
+		List<Boolean> results = ConcurrentTasks.run(200,
+				index -> roomRepository.addUser(room.getId(), new ObjectId().toHexString(), maxUsers));
+
+		Room savedRoom = roomRepository.findById(room.getId()).get();
+		assertEquals(maxUsers, results.stream().filter(Boolean::booleanValue).count());
+		assertEquals(maxUsers, savedRoom.getUsers().size());
+	}
+
+	@Test
+	void renameDoesNotUndoConcurrentJoins() throws Exception {
+		int joins = 100;
+		Room room = createRoom();
+
+		List<Boolean> results = ConcurrentTasks.run(joins, index -> {
+			roomRepository.rename(room.getId(), room.getOwner(), "Renamed");
+			return roomRepository.addUser(room.getId(), new ObjectId().toHexString(), joins);
+		});
+
+		Room savedRoom = roomRepository.findById(room.getId()).get();
+		assertTrue(results.stream().allMatch(Boolean::booleanValue));
+		assertEquals("Renamed", savedRoom.getName());
+		assertEquals(joins, savedRoom.getUsers().size());
+		assertFalse(roomRepository.rename(room.getId(), "other@example.com", "Other"));
+	}
+
+	private Room createRoom() {
+		Room room = new Room();
+		room.setName("Room");
+		room.setOwner("owner@example.com");
+		room.setUsers(new ArrayList<>());
+		room.setAllUsers(new ArrayList<>());
+		return roomRepository.save(room);
+	}
+
+}
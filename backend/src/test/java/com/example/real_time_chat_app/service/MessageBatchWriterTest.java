@@ -0,0 +1,225 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.exception.MessagePersistenceBusyException;
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.RoomRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class MessageBatchWriterTest {
+
+	private static final long TIMEOUT_SECONDS = 5;
+
+	@Mock
+	private MongoTemplate mongoTemplate;
+
+	@Mock
+	private RoomRepository roomRepository;
+
+	@Mock
+	private MessageSequencer messageSequencer;
+
+	@Mock
+	private RecentMessageBuffer recentMessageBuffer;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private MessageBatchWriter messageBatchWriter;
+
+	@BeforeEach
+	void setup() {
+		AtomicLong sequences = new AtomicLong();
+		lenient().doAnswer(invocation -> {
+			for (Message message : invocation.<List<Message>>getArgument(0)) {
+				message.setSequence(sequences.incrementAndGet());
+			}
+			return null;
+		}).when(messageSequencer).assign(anyList());
+	}
+
+	@AfterEach
+	void shutdown() {
+		ReflectionTestUtils.invokeMethod(messageBatchWriter, "shutdown");
+	}
+
+	@Test
+	void flushesWhenTheBatchIsFull() throws Exception {
+		start(3, 60000);
+
+		List<CompletableFuture<Message>> futures = List.of(write("a"), write("b"), write("c"));
+
+		for (int i = 0; i < futures.size(); i++) {
+			assertEquals(i + 1, futures.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getSequence());
+		}
+		verify(mongoTemplate).insert(argThat((List<Message> messages) -> messages.size() == 3), eq(Message.class));
+	}
+
+	@Test
+	void flushesAfterTheInterval() throws Exception {
+		start(500, 50);
+
+		Message saved = write("a").get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		assertEquals(1L, saved.getSequence());
+		verify(mongoTemplate).insert(argThat((List<Message> messages) -> messages.size() == 1), eq(Message.class));
+		verify(roomRepository).updateLastMessage(saved);
+		verify(recentMessageBuffer).append(saved);
+	}
+
+	@Test
+	void savesOneByOneWhenTheBulkInsertFails() throws Exception {
+		start(2, 60000);
+		doThrow(new IllegalStateException("Bulk insert failed")).when(mongoTemplate).insert(anyCollection(),
+				eq(Message.class));
+		when(mongoTemplate.save(any(Message.class))).thenAnswer(invocation -> {
+			Message message = invocation.getArgument(0);
+			if (message.getContent().equals("bad")) {
+				throw new IllegalStateException("Save failed");
+			}
+			return message;
+		});
+
+		CompletableFuture<Message> good = write("good");
+		CompletableFuture<Message> bad = write("bad");
+
+		Message saved = good.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> bad.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalStateException.class, e.getCause());
+		verify(mongoTemplate, times(2)).save(any(Message.class));
+		verify(roomRepository).updateLastMessage(saved);
+		verify(roomRepository, times(1)).updateLastMessage(any());
+	}
+
+	@Test
+	void failsOnlyTheMessagesOfDeletedRooms() throws Exception {
+		start(2, 60000);
+		doAnswer(invocation -> {
+			for (Message message : invocation.<List<Message>>getArgument(0)) {
+				message.setSequence(message.getRoomId().equals("deleted") ? null : 1L);
+			}
+			return null;
+		}).when(messageSequencer).assign(anyList());
+
+		Message deleted = createMessage("a");
+		deleted.setRoomId("deleted");
+		CompletableFuture<Message> rejected = messageBatchWriter.write(deleted);
+		CompletableFuture<Message> saved = write("b");
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertInstanceOf(RoomDeletedException.class, e.getCause());
+		assertEquals("b", saved.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getContent());
+		verify(mongoTemplate).insert(argThat((List<Message> messages) -> messages.size() == 1), eq(Message.class));
+		verify(roomRepository, never()).updateLastMessage(deleted);
+	}
+
+	@Test
+	void failsTheBatchWhenNumberingFails() {
+		start(1, 60000);
+		doThrow(new IllegalStateException("Allocation failed")).when(messageSequencer).assign(anyList());
+
+		CompletableFuture<Message> future = write("a");
+
+		assertThrows(ExecutionException.class, () -> future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		verify(mongoTemplate, never()).insert(anyCollection(), eq(Message.class));
+	}
+
+	@Test
+	void shutdownSavesQueuedMessagesAndRejectsNewOnes() throws Exception {
+		start(500, 60000);
+		CompletableFuture<Message> first = write("a");
+		CompletableFuture<Message> second = write("b");
+
+		ReflectionTestUtils.invokeMethod(messageBatchWriter, "shutdown");
+
+		assertTrue(first.isDone() && !first.isCompletedExceptionally());
+		assertTrue(second.isDone() && !second.isCompletedExceptionally());
+		assertThrows(MessagePersistenceBusyException.class, () -> write("c"));
+	}
+
+	@Test
+	void interruptedWriterStillSavesItsBatch() throws Exception {
+		start(500, 60000);
+		CompletableFuture<Message> future = write("a");
+
+		Thread writerThread = (Thread) ReflectionTestUtils.getField(messageBatchWriter, "writerThread");
+		writerThread.interrupt();
+
+		assertEquals("a", future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getContent());
+	}
+
+	@Test
+	void writeDoesNotChangeTheSequenceOfTheCallersMessage() throws Exception {
+		start(1, 60000);
+		Message message = createMessage("a");
+
+		Message saved = messageBatchWriter.write(message).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		assertEquals(saved.getId(), message.getId());
+		assertEquals(1L, saved.getSequence());
+		assertNull(message.getSequence());
+	}
+
+	private void start(int batchSize, long flushInterval) {
+		ReflectionTestUtils.setField(messageBatchWriter, "persistenceMode", MessagePersistenceMode.BATCH);
+		ReflectionTestUtils.setField(messageBatchWriter, "batchSize", batchSize);
+		ReflectionTestUtils.setField(messageBatchWriter, "flushInterval", flushInterval);
+		ReflectionTestUtils.setField(messageBatchWriter, "queueCapacity", 100);
+		ReflectionTestUtils.setField(messageBatchWriter, "enqueueTimeout", 100L);
+		ReflectionTestUtils.setField(messageBatchWriter, "shutdownTimeout", 5000L);
+		ReflectionTestUtils.invokeMethod(messageBatchWriter, "init");
+	}
+
+	private CompletableFuture<Message> write(String content) {
+		return messageBatchWriter.write(createMessage(content));
+	}
+
+	private static Message createMessage(String content) {
+		Message message = new Message();
+		message.setRoomId("room1");
+		message.setContent(content);
+		return message;
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.real_time_chat_app.exception.RoomDeletedException;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.MessageSequenceRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MessageSequencerTest {
+
+	@Mock
+	private MessageSequenceRepository messageSequenceRepository;
+
+	@InjectMocks
+	private MessageSequencer messageSequencer;
+
+	@Test
+	void numbersEachRoomWithOneAllocation() {
+		when(messageSequenceRepository.allocate("room1", 2)).thenReturn(10L);
+		when(messageSequenceRepository.allocate("room2", 1)).thenReturn(1L);
+		List<Message> messages = List.of(createMessage("room1"), createMessage("room2"), createMessage("room1"));
+
+		messageSequencer.assign(messages);
+
+		assertEquals(10L, messages.get(0).getSequence());
+		assertEquals(1L, messages.get(1).getSequence());
+		assertEquals(11L, messages.get(2).getSequence());
+	}
+
+	@Test
+	void leavesTheMessagesOfDeletedRoomsUnnumbered() {
+		when(messageSequenceRepository.allocate("room1", 1)).thenReturn(3L);
+		when(messageSequenceRepository.allocate("deleted", 2))
+				.thenThrow(new RoomDeletedException("Room deleted was deleted"));
+		List<Message> messages = List.of(createMessage("deleted"), createMessage("room1"), createMessage("deleted"));
+
+		messageSequencer.assign(messages);
+
+		assertNull(messages.get(0).getSequence());
+		assertEquals(3L, messages.get(1).getSequence());
+		assertNull(messages.get(2).getSequence());
+	}
+
+	@Test
+	void rejectsASingleMessageToADeletedRoom() {
+		when(messageSequenceRepository.allocate("deleted", 1))
+				.thenThrow(new RoomDeletedException("Room deleted was deleted"));
+
+		assertThrows(RoomDeletedException.class, () -> messageSequencer.assign(createMessage("deleted")));
+	}
+
+	private static Message createMessage(String roomId) {
+		Message message = new Message();
+		message.setRoomId(roomId);
+		message.setSequence(99L);
+		return message;
+	}
+
+}
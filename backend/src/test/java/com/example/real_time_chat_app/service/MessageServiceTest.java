@@ -0,0 +1,140 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.dto.MessagePageDTO;
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.MessageRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MessageServiceTest {
+
+	private static final String ROOM_ID = "room1";
+
+	@Mock
+	private MessageRepository messageRepository;
+
+	@Mock
+	private RecentMessageBuffer recentMessageBuffer;
+
+	@InjectMocks
+	private MessageService messageService;
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(messageService, "defaultHistoryLimit", 50);
+		ReflectionTestUtils.setField(messageService, "maxHistoryLimit", 200);
+		// The recent messages are not buffered, so every page is read from the repository
+		lenient().when(recentMessageBuffer.getOlder(anyString(), any(), anyInt())).thenReturn(null);
+		lenient().when(recentMessageBuffer.getNewer(anyString(), anyLong(), anyInt())).thenReturn(null);
+		lenient().when(messageRepository.findByRoomIdOrderBySequenceDesc(eq(ROOM_ID), eq(PageRequest.of(0, 3))))
+				.thenReturn(messages(10, 9, 8));
+	}
+
+	@ParameterizedTest
+	@CsvSource(value = { "null, 50", "-5, 1", "0, 1", "1, 1", "20, 20", "200, 200", "1000, 200" }, nullValues = "null")
+	void clampsTheLimit(Integer limit, int pageSize) {
+		messageService.getMessagePage(ROOM_ID, null, null, limit);
+
+		// One extra message tells if there is another page
+		verify(recentMessageBuffer).getOlder(ROOM_ID, null, pageSize + 1);
+		verify(messageRepository).findByRoomIdOrderBySequenceDesc(ROOM_ID, PageRequest.of(0, pageSize + 1));
+	}
+
+	@Test
+	void pagesBackwardsWithTheNextCursor() {
+		MessagePageDTO newest = messageService.getMessagePage(ROOM_ID, null, null, 2);
+
+		assertEquals(List.of(10L, 9L), sequences(newest));
+		assertEquals(cursor("9"), newest.getNextCursor());
+		assertEquals(cursor("10"), newest.getPreviousCursor());
+
+		when(messageRepository.findByRoomIdAndSequenceLessThanOrderBySequenceDesc(ROOM_ID, 9L, PageRequest.of(0, 3)))
+				.thenReturn(messages(8));
+		MessagePageDTO older = messageService.getMessagePage(ROOM_ID, newest.getNextCursor(), null, 2);
+
+		assertEquals(List.of(8L), sequences(older));
+		assertNull(older.getNextCursor());
+	}
+
+	@Test
+	void pagesForwardsWithThePreviousCursor() {
+		when(messageRepository.findByRoomIdAndSequenceGreaterThanOrderBySequenceAsc(ROOM_ID, 8L,
+				PageRequest.of(0, 3))).thenReturn(messages(9, 10, 11));
+
+		MessagePageDTO newer = messageService.getMessagePage(ROOM_ID, null, cursor("8"), 2);
+
+		assertEquals(List.of(10L, 9L), sequences(newer));
+		assertEquals(cursor("10"), newer.getPreviousCursor());
+		assertEquals(cursor("9"), newer.getNextCursor());
+	}
+
+	@Test
+	void keepsTheAfterCursorWhenThereIsNothingNewer() {
+		MessagePageDTO page = messageService.getMessagePage(ROOM_ID, null, cursor("10"), 2);
+
+		assertEquals(List.of(), page.getMessages());
+		assertEquals(cursor("10"), page.getPreviousCursor());
+	}
+
+	/**
+	 * Cursors that are not URL safe base64, or that do not decode to a number, are
+	 * rejected before any query.
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = { "!!!", "abc=def", "a", "", "YWJj", "MS41", "OTk5OTk5OTk5OTk5OTk5OTk5OTk5" })
+	void rejectsMalformedCursors(String cursor) {
+		assertThrows(IllegalArgumentException.class, () -> messageService.getMessagePage(ROOM_ID, cursor, null, 10));
+		assertThrows(IllegalArgumentException.class, () -> messageService.getMessagePage(ROOM_ID, null, cursor, 10));
+		verify(messageRepository, never()).findByRoomIdAndSequenceLessThanOrderBySequenceDesc(
+				eq(ROOM_ID), anyLong(), any());
+	}
+
+	private static String cursor(String sequence) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(sequence.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<Message> messages(long... sequences) {
+		List<Message> messages = new ArrayList<>();
+		for (long sequence : sequences) {
+			Message message = new Message();
+			message.setRoomId(ROOM_ID);
+			message.setSequence(sequence);
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	private static List<Long> sequences(MessagePageDTO page) {
+		return page.getMessages().stream().map(Message::getSequence).toList();
+	}
+
+}
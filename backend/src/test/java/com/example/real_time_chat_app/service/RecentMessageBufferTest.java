@@ -0,0 +1,210 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.model.Message;
+import com.example.real_time_chat_app.repository.MessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class RecentMessageBufferTest {
+
+	private static final String ROOM_ID = "room1";
+
+	@Mock
+	private MessageRepository messageRepository;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private RecentMessageBuffer recentMessageBuffer;
+
+	private final AtomicLong time = new AtomicLong();
+
+	// The messages in the database by room
+	private final Map<String, List<Message>> stored = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void setup() {
+		lenient().when(messageRepository.findByRoomIdOrderBySequenceDesc(anyString(), any(Pageable.class)))
+				.thenAnswer(invocation -> stored.getOrDefault(invocation.<String>getArgument(0), List.of()).stream()
+						.sorted(Comparator.comparing(Message::getSequence).reversed())
+						.limit(invocation.<Pageable>getArgument(1).getPageSize())
+						.toList());
+
+		ReflectionTestUtils.setField(recentMessageBuffer, "capacity", 10);
+		ReflectionTestUtils.setField(recentMessageBuffer, "memoryBudget", 67108864L);
+		ReflectionTestUtils.setField(recentMessageBuffer, "expiration", 60L);
+		ReflectionTestUtils.setField(recentMessageBuffer, "ticker", (Ticker) time::get);
+	}
+
+	@Test
+	void readsAfterTheFirstAreHits() {
+		init();
+		store(ROOM_ID, 1, 5);
+
+		assertSequences(List.of(5L, 4L, 3L), recentMessageBuffer.getOlder(ROOM_ID, null, 3));
+		assertSequences(List.of(2L, 1L), recentMessageBuffer.getOlder(ROOM_ID, 3L, 3));
+		assertSequences(List.of(4L, 5L), recentMessageBuffer.getNewer(ROOM_ID, 3, 3));
+
+		verify(messageRepository, times(1)).findByRoomIdOrderBySequenceDesc(anyString(), any(Pageable.class));
+		assertEquals(2, reads("hit"));
+		assertEquals(1, reads("miss"));
+	}
+
+	@Test
+	void appendedMessagesAreRead() {
+		init();
+		store(ROOM_ID, 1, 3);
+		recentMessageBuffer.getOlder(ROOM_ID, null, 1);
+
+		recentMessageBuffer.append(message(ROOM_ID, 4));
+
+		assertSequences(List.of(4L, 3L), recentMessageBuffer.getOlder(ROOM_ID, null, 2));
+		assertSequences(List.of(4L), recentMessageBuffer.getNewer(ROOM_ID, 3, 5));
+	}
+
+	@Test
+	void messagesOlderThanTheBufferAreMisses() {
+		init();
+		store(ROOM_ID, 1, 25);
+
+		assertSequences(List.of(25L, 24L), recentMessageBuffer.getOlder(ROOM_ID, null, 2));
+		assertNull(recentMessageBuffer.getOlder(ROOM_ID, 17L, 5));
+		assertNull(recentMessageBuffer.getNewer(ROOM_ID, 10, 5));
+		// The first read loaded the buffer
+		assertEquals(3, reads("miss"));
+		assertEquals(0, reads("hit"));
+	}
+
+	/**
+	 * Message 4 was saved by another instance, so it was never appended here and
+	 * the buffer must not answer reads across it.
+	 */
+	@Test
+	void gapsInTheSequenceAreMisses() {
+		init();
+		store(ROOM_ID, 1, 3);
+		recentMessageBuffer.getOlder(ROOM_ID, null, 1);
+
+		recentMessageBuffer.append(message(ROOM_ID, 5));
+
+		assertNull(recentMessageBuffer.getOlder(ROOM_ID, null, 3));
+		assertNull(recentMessageBuffer.getNewer(ROOM_ID, 3, 5));
+		assertSequences(List.of(5L), recentMessageBuffer.getOlder(ROOM_ID, null, 1));
+		assertSequences(List.of(3L, 2L), recentMessageBuffer.getOlder(ROOM_ID, 4L, 2));
+	}
+
+	@Test
+	void buffersAreReloadedAfterTheExpiration() {
+		init();
+		store(ROOM_ID, 1, 3);
+		recentMessageBuffer.getOlder(ROOM_ID, null, 1);
+
+		// Saved by another instance after the buffer was loaded
+		stored.get(ROOM_ID).add(message(ROOM_ID, 4));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		recentMessageBuffer.append(message(ROOM_ID, 5));
+		assertSequences(List.of(), recentMessageBuffer.getNewer(ROOM_ID, 5, 5));
+
+		// Appends do not extend the buffer's life
+		time.addAndGet(TimeUnit.SECONDS.toNanos(31));
+		stored.get(ROOM_ID).add(message(ROOM_ID, 5));
+
+		assertSequences(List.of(4L, 5L), recentMessageBuffer.getNewer(ROOM_ID, 3, 5));
+		verify(messageRepository, times(2)).findByRoomIdOrderBySequenceDesc(anyString(), any(Pageable.class));
+	}
+
+	@Test
+	void buffersAreEvictedOverTheMemoryBudget() {
+		ReflectionTestUtils.setField(recentMessageBuffer, "memoryBudget", 5000L);
+		init();
+		for (int room = 0; room < 10; room++) {
+			store("room" + room, 1, 10);
+			recentMessageBuffer.getOlder("room" + room, null, 1);
+		}
+
+		Cache<?, ?> buffers = (Cache<?, ?>) ReflectionTestUtils.getField(recentMessageBuffer, "buffers");
+		buffers.cleanUp();
+
+		long weight = buffers.policy().eviction().get().weightedSize().getAsLong();
+		assertTrue(weight <= 5000, weight + " bytes buffered");
+		assertTrue(buffers.estimatedSize() < 10);
+	}
+
+	@Test
+	void evictedRoomsAreLoadedAgain() {
+		init();
+		store(ROOM_ID, 1, 3);
+		recentMessageBuffer.getOlder(ROOM_ID, null, 1);
+
+		recentMessageBuffer.evict(ROOM_ID);
+		stored.get(ROOM_ID).clear();
+
+		assertSequences(List.of(), recentMessageBuffer.getOlder(ROOM_ID, null, 5));
+	}
+
+	private void init() {
+		ReflectionTestUtils.invokeMethod(recentMessageBuffer, "init");
+	}
+
+	private void store(String roomId, long first, long last) {
+		List<Message> messages = stored.computeIfAbsent(roomId, key -> new CopyOnWriteArrayList<>());
+		for (long sequence = first; sequence <= last; sequence++) {
+			messages.add(message(roomId, sequence));
+		}
+	}
+
+	private double reads(String result) {
+		return meterRegistry.counter("chat.messages.buffer.reads", "result", result).count();
+	}
+
+	private static Message message(String roomId, long sequence) {
+		Message message = new Message();
+		message.setId(roomId + "-" + sequence);
+		message.setRoomId(roomId);
+		message.setContent("Message " + sequence);
+		message.setSequence(sequence);
+		return message;
+	}
+
+	private static void assertSequences(List<Long> expected, List<Message> messages) {
+		List<Long> sequences = new ArrayList<>();
+		for (Message message : messages) {
+			sequences.add(message.getSequence());
+		}
+		assertEquals(expected, sequences);
+	}
+
+}
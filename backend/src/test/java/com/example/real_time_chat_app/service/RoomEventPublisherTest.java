@@ -0,0 +1,112 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.dto.UserRoomDTO;
+import com.example.real_time_chat_app.model.Room;
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.RoomRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class RoomEventPublisherTest {
+
+	@Mock
+	private SimpMessagingTemplate messagingTemplate;
+
+	@Mock
+	private SimpUserRegistry simpUserRegistry;
+
+	@Mock
+	private UserProfileCache userProfileCache;
+
+	@Mock
+	private RoomRepository roomRepository;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private RoomEventPublisher roomEventPublisher;
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.invokeMethod(roomEventPublisher, "init");
+	}
+
+	@Test
+	void countsTheSessionsOfMembersAndOfAllConnectedUsers() {
+		SimpUser member = simpUser(2);
+		SimpUser other = simpUser(3);
+		when(simpUserRegistry.getUsers()).thenReturn(Set.of(member, other));
+		when(simpUserRegistry.getUser("member@example.com")).thenReturn(member);
+		when(userProfileCache.getProfiles(any())).thenReturn(profiles("member", "offline"));
+
+		UserRoomDTO userRoom = new UserRoomDTO();
+
+		roomEventPublisher.sendRoomUpdate(room("member", "offline"), userRoom);
+
+		verify(messagingTemplate).convertAndSendToUser("member@example.com", "/queue/rooms", userRoom);
+		verify(messagingTemplate, never()).convertAndSendToUser(eq("offline@example.com"), anyString(), any());
+		assertEquals(2, meterRegistry.get("chat.room.updates.frames").tag("delivery", "targeted").counter().count());
+		assertEquals(5,
+				meterRegistry.get("chat.room.updates.frames").tag("delivery", "all-sessions").counter().count());
+	}
+
+	private static SimpUser simpUser(int sessionCount) {
+		SimpUser simpUser = mock(SimpUser.class);
+		Set<SimpSession> sessions = new HashSet<>();
+		for (int i = 0; i < sessionCount; i++) {
+			sessions.add(mock(SimpSession.class));
+		}
+		when(simpUser.getSessions()).thenReturn(sessions);
+		return simpUser;
+	}
+
+	private static Room room(String... userIds) {
+		Room room = new Room();
+		room.setId("room1");
+		room.setUsers(List.of(userIds));
+		return room;
+	}
+
+	private static Map<String, UserProfileCache.Profile> profiles(String... userIds) {
+		Map<String, UserProfileCache.Profile> profiles = new LinkedHashMap<>();
+		for (String userId : userIds) {
+			User user = new User();
+			user.setId(userId);
+			user.setEmail(userId + "@example.com");
+			profiles.put(userId, new UserProfileCache.Profile(user));
+		}
+		return profiles;
+	}
+
+}
@@ -0,0 +1,180 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class RoomMembershipCacheTest {
+
+	private static final String EMAIL = "user@example.com";
+
+	private static final String USER_ID = "user1";
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private RoomMembershipCache roomMembershipCache;
+
+	// The user's rooms in the database
+	private final List<String> rooms = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(roomMembershipCache, "maximumSize", 1000L);
+		ReflectionTestUtils.setField(roomMembershipCache, "expiration", 600L);
+		ReflectionTestUtils.invokeMethod(roomMembershipCache, "init");
+	}
+
+	@Test
+	void cachesMembershipUntilTheUserChanges() {
+		rooms.add("room1");
+		when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> Optional.of(loadUser()));
+
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		verify(userRepository, times(1)).findByEmail(EMAIL);
+
+		rooms.remove("room1");
+		roomMembershipCache.removeRoom(USER_ID, "room1");
+
+		assertFalse(roomMembershipCache.isMember(EMAIL, "room1"));
+		verify(userRepository, times(2)).findByEmail(EMAIL);
+	}
+
+	/**
+	 * The user leaves after their rooms were read but before the load is cached,
+	 * so the load must not be kept.
+	 */
+	@Test
+	void leaveDuringALoadIsNotLost() {
+		rooms.add("room1");
+		when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> {
+			User user = loadUser();
+			rooms.remove("room1");
+			roomMembershipCache.removeRoom(USER_ID, "room1");
+			return Optional.of(user);
+		}).thenAnswer(invocation -> Optional.of(loadUser()));
+
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		assertFalse(roomMembershipCache.isMember(EMAIL, "room1"));
+	}
+
+	/**
+	 * The user leaves after a load was cached, so the cached rooms must not be
+	 * used again.
+	 */
+	@Test
+	void leaveAfterALoadIsNotLost() {
+		rooms.add("room1");
+		when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> Optional.of(loadUser()));
+
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		rooms.remove("room1");
+		roomMembershipCache.removeRoom(USER_ID, "room1");
+
+		assertFalse(roomMembershipCache.isMember(EMAIL, "room1"));
+	}
+
+	@Test
+	void changesToOtherUsersKeepTheLoad() {
+		rooms.add("room1");
+		when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> {
+			roomMembershipCache.removeRoom("otherUser", "room1");
+			return Optional.of(loadUser());
+		});
+
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		roomMembershipCache.addRoom("otherUser", "room2");
+		assertTrue(roomMembershipCache.isMember(EMAIL, "room1"));
+		verify(userRepository, times(1)).findByEmail(EMAIL);
+	}
+
+	/**
+	 * Loads and leaves run at the same time. Once the user has left, no check may
+	 * see the room again.
+	 */
+	@Test
+	void concurrentLoadsNeverKeepARoomAfterLeaving() throws Exception {
+		when(userRepository.findByEmail(EMAIL)).thenAnswer(invocation -> {
+			User user = loadUser();
+			Thread.yield();
+			return Optional.of(user);
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int round = 0; round < 200; round++) {
+				String roomId = "room" + round;
+				rooms.add(roomId);
+				roomMembershipCache.addRoom(USER_ID, roomId);
+				assertTrue(roomMembershipCache.isMember(EMAIL, roomId));
+
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<?>> checks = new ArrayList<>();
+				for (int i = 0; i < 7; i++) {
+					checks.add(executor.submit(() -> {
+						start.await();
+						return roomMembershipCache.isMember(EMAIL, roomId);
+					}));
+				}
+				Future<?> leave = executor.submit(() -> {
+					start.await();
+					rooms.remove(roomId);
+					roomMembershipCache.removeRoom(USER_ID, roomId);
+					return null;
+				});
+
+				start.countDown();
+				leave.get(10, TimeUnit.SECONDS);
+				for (Future<?> check : checks) {
+					check.get(10, TimeUnit.SECONDS);
+				}
+
+				assertFalse(roomMembershipCache.isMember(EMAIL, roomId), "Still a member after leaving " + roomId);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private User loadUser() {
+		User user = new User();
+		user.setId(USER_ID);
+		user.setEmail(EMAIL);
+		user.setRooms(new ArrayList<>(rooms));
+		return user;
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.example.real_time_chat_app.dto.UserRoomDTO;
+import com.example.real_time_chat_app.model.Room;
+import com.example.real_time_chat_app.model.User;
+import com.example.real_time_chat_app.repository.RoomRepository;
+import com.example.real_time_chat_app.repository.UserRepository;
+
+@ExtendWith(MockitoExtension.class)
+class RoomServiceTest {
+
+	@Mock
+	private RoomRepository roomRepository;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@Mock
+	private UserService userService;
+
+	@Mock
+	private UserProfileCache userProfileCache;
+
+	@InjectMocks
+	private RoomService roomService;
+
+	/**
+	 * The number of queries for a user's room list should not grow with the number
+	 * of rooms the user is in.
+	 */
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 10, 50 })
+	void getUserRoomsUsesTheSameNumberOfQueriesForAnyNumberOfRooms(int roomCount) {
+		List<String> roomIds = new ArrayList<>();
+		List<Room> rooms = new ArrayList<>();
+		Map<String, UserProfileCache.Profile> senders = new HashMap<>();
+
+		for (int i = 0; i < roomCount; i++) {
+			Room room = new Room();
+			room.setId("room" + i);
+			room.setName("Room " + i);
+			room.setOwner("owner@example.com");
+			room.setLastMessage("Hello");
+			room.setLastMessageSenderId("sender" + i);
+			roomIds.add(room.getId());
+			rooms.add(room);
+
+			User sender = new User();
+			sender.setId("sender" + i);
+			sender.setFirstName("Sender" + i);
+			senders.put(sender.getId(), new UserProfileCache.Profile(sender));
+		}
+
+		User user = new User();
+		user.setId("user");
+		user.setRooms(roomIds);
+
+		when(roomRepository.findAllById(anyIterable())).thenReturn(rooms);
+		when(userProfileCache.getProfiles(anyCollection())).thenReturn(senders);
+
+		List<UserRoomDTO> userRooms = roomService.getUserRooms(user);
+
+		assertEquals(roomCount, userRooms.size());
+		assertEquals("Sender" + (roomCount - 1), userRooms.get(roomCount - 1).getLastMessageSenderFirstName());
+		verify(roomRepository, times(1)).findAllById(anyIterable());
+		verify(userProfileCache, times(1)).getProfiles(anyCollection());
+		verify(roomRepository, never()).findById(anyString());
+		verify(userService, never()).getUserById(anyString());
+	}
+
+}
@@ -0,0 +1,235 @@
+package com.example.real_time_chat_app.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.model.RevokedToken;
+import com.example.real_time_chat_app.repository.RevokedTokenRepository;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+	private static final String EMAIL = "user@example.com";
+
+	private static final long HOUR_MILLIS = 3600000;
+
+	@Mock
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private TokenRevocationService tokenRevocationService;
+
+	// The revoked tokens in the database
+	private final Map<String, RevokedToken> stored = new ConcurrentHashMap<>();
+
+	@BeforeEach
+	void setup() {
+		lenient().when(revokedTokenRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(stored.values()));
+		lenient().when(revokedTokenRepository.existsById(anyString()))
+				.thenAnswer(invocation -> stored.containsKey(invocation.<String>getArgument(0)));
+		lenient().when(revokedTokenRepository.findByRevokedAtGreaterThanEqual(any(Date.class)))
+				.thenAnswer(invocation -> stored.values().stream()
+						.filter(token -> !token.getRevokedAt().before(invocation.getArgument(0)))
+						.toList());
+		lenient().when(revokedTokenRepository.save(any(RevokedToken.class))).thenAnswer(invocation -> {
+			RevokedToken revokedToken = invocation.getArgument(0);
+			stored.put(revokedToken.getTokenId(), revokedToken);
+			return revokedToken;
+		});
+
+		ReflectionTestUtils.setField(tokenRevocationService, "expiration", 2419200L);
+		ReflectionTestUtils.setField(tokenRevocationService, "expectedRevocations", 1000L);
+		ReflectionTestUtils.setField(tokenRevocationService, "falsePositiveProbability", 0.001);
+		ReflectionTestUtils.setField(tokenRevocationService, "syncOverlap", 5000L);
+	}
+
+	@Test
+	void revokedTokensAreRejected() {
+		init();
+		Claims claims = claims(new Date());
+
+		tokenRevocationService.revoke(claims);
+
+		assertTrue(tokenRevocationService.isRevoked(claims));
+		assertEquals(claims.getExpiration(), stored.get(claims.getId()).getExpiresAt());
+	}
+
+	@Test
+	void tokensMissingFromTheFilterDoNotQueryTheDatabase() {
+		init();
+
+		assertFalse(tokenRevocationService.isRevoked(claims(new Date())));
+		verify(revokedTokenRepository, never()).existsById(anyString());
+	}
+
+	@Test
+	void filterHitsAreCheckedInTheDatabase() {
+		Claims claims = claims(new Date());
+		store(revokedToken(claims.getId()));
+		init();
+		// Removed from the database after the filter was built, like an expired token
+		stored.remove(claims.getId());
+
+		assertFalse(tokenRevocationService.isRevoked(claims));
+		assertEquals(1, meterRegistry.counter("security.token.revocation.filter.hits").count());
+		assertEquals(1, meterRegistry.counter("security.token.revocation.filter.false.positives").count());
+	}
+
+	@Test
+	void startupLoadsStoredRevocations() {
+		Claims claims = claims(new Date());
+		store(revokedToken(claims.getId()));
+
+		init();
+
+		assertTrue(tokenRevocationService.isRevoked(claims));
+	}
+
+	@Test
+	void syncAddsRevocationsFromOtherInstances() {
+		init();
+		Claims claims = claims(new Date());
+		store(revokedToken(claims.getId()));
+
+		assertFalse(tokenRevocationService.isRevoked(claims));
+		tokenRevocationService.sync();
+
+		assertTrue(tokenRevocationService.isRevoked(claims));
+	}
+
+	@Test
+	void rebuildDropsRevocationsThatWereRemoved() {
+		Claims claims = claims(new Date());
+		store(revokedToken(claims.getId()));
+		init();
+		stored.clear();
+
+		tokenRevocationService.rebuild();
+
+		assertFalse(tokenRevocationService.isRevoked(claims));
+		verify(revokedTokenRepository, never()).existsById(anyString());
+	}
+
+	@Test
+	void revokingByIssueTimeKeepsNewerTokens() {
+		init();
+		Date now = new Date();
+		Claims older = claims(new Date(now.getTime() - HOUR_MILLIS));
+		Claims newer = claims(new Date(now.getTime() + 1000));
+
+		tokenRevocationService.revokeIssuedBefore(EMAIL, now);
+
+		assertTrue(tokenRevocationService.isRevoked(older));
+		assertFalse(tokenRevocationService.isRevoked(newer));
+		assertFalse(tokenRevocationService.isRevoked(claims("other@example.com", older.getIssuedAt())));
+	}
+
+	@Test
+	void revokingByIssueTimeKeepsTokensIssuedInTheSameSecond() {
+		init();
+		Date cutoff = new Date(new Date().getTime() / 1000 * 1000 + 500);
+
+		tokenRevocationService.revokeIssuedBefore(EMAIL, cutoff);
+
+		assertFalse(tokenRevocationService.isRevoked(claims(new Date(cutoff.getTime() / 1000 * 1000))));
+	}
+
+	@Test
+	void syncAndRebuildLoadCutoffsFromOtherInstances() {
+		init();
+		Claims older = claims(new Date(System.currentTimeMillis() - HOUR_MILLIS));
+		RevokedToken cutoff = new RevokedToken();
+		cutoff.setTokenId("subject:" + EMAIL);
+		cutoff.setSubject(EMAIL);
+		cutoff.setIssuedBefore(new Date());
+		cutoff.setRevokedAt(new Date());
+		store(cutoff);
+
+		tokenRevocationService.sync();
+		assertTrue(tokenRevocationService.isRevoked(older));
+
+		tokenRevocationService.rebuild();
+		assertTrue(tokenRevocationService.isRevoked(older));
+
+		stored.clear();
+		tokenRevocationService.rebuild();
+		assertFalse(tokenRevocationService.isRevoked(older));
+	}
+
+	@Test
+	void syncKeepsTheLatestCutoff() {
+		init();
+		Date now = new Date();
+		tokenRevocationService.revokeIssuedBefore(EMAIL, now);
+
+		RevokedToken earlier = new RevokedToken();
+		earlier.setTokenId("subject:" + EMAIL);
+		earlier.setSubject(EMAIL);
+		earlier.setIssuedBefore(new Date(now.getTime() - 2 * HOUR_MILLIS));
+		earlier.setRevokedAt(new Date());
+		store(earlier);
+		tokenRevocationService.sync();
+
+		assertTrue(tokenRevocationService.isRevoked(claims(new Date(now.getTime() - HOUR_MILLIS))));
+	}
+
+	private void init() {
+		ReflectionTestUtils.invokeMethod(tokenRevocationService, "init");
+	}
+
+	private void store(RevokedToken revokedToken) {
+		stored.put(revokedToken.getTokenId(), revokedToken);
+	}
+
+	private static RevokedToken revokedToken(String tokenId) {
+		RevokedToken revokedToken = new RevokedToken();
+		revokedToken.setTokenId(tokenId);
+		revokedToken.setRevokedAt(new Date());
+		revokedToken.setExpiresAt(new Date(System.currentTimeMillis() + HOUR_MILLIS));
+		return revokedToken;
+	}
+
+	private static Claims claims(Date issuedAt) {
+		return claims(EMAIL, issuedAt);
+	}
+
+	private static Claims claims(String subject, Date issuedAt) {
+		return Jwts.claims()
+				.id(UUID.randomUUID().toString())
+				.subject(subject)
+				.issuedAt(issuedAt)
+				.expiration(new Date(issuedAt.getTime() + HOUR_MILLIS))
+				.build();
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.example.real_time_chat_app.util;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A raw password that holds the thread hashing it until it is released, for
+ * filling up the password hashing executor in tests.
+ */
+public class BlockingPassword implements CharSequence {
+
+	public final CountDownLatch started = new CountDownLatch(1);
+
+	private final CountDownLatch release;
+
+	public BlockingPassword(CountDownLatch release) {
+		this.release = release;
+	}
+
+	@Override
+	public String toString() {
+		started.countDown();
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "password";
+	}
+
+	@Override
+	public int length() {
+		return toString().length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+}
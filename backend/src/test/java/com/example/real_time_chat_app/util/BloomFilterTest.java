@@ -0,0 +1,87 @@
+package com.example.real_time_chat_app.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+	@Test
+	void addedValuesAreAlwaysFound() {
+		BloomFilter filter = new BloomFilter(1000, 0.01);
+		List<String> values = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			String value = UUID.randomUUID().toString();
+			values.add(value);
+			filter.put(value);
+		}
+
+		for (String value : values) {
+			assertTrue(filter.mightContain(value));
+		}
+	}
+
+	@Test
+	void emptyFilterFindsNothing() {
+		BloomFilter filter = new BloomFilter(1000, 0.01);
+
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(filter.mightContain(UUID.randomUUID().toString()));
+		}
+	}
+
+	@Test
+	void falsePositivesStayNearTheConfiguredProbability() {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.put("added" + i);
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("missing" + i)) {
+				falsePositives++;
+			}
+		}
+
+		assertTrue(falsePositives < 2000, falsePositives + " false positives in 100000 checks");
+	}
+
+	@Test
+	void concurrentPutsAreNotLost() throws Exception {
+		BloomFilter filter = new BloomFilter(80000, 0.001);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<?>> puts = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				int first = thread * 10000;
+				puts.add(executor.submit(() -> {
+					for (int i = first; i < first + 10000; i++) {
+						filter.put("value" + i);
+					}
+				}));
+			}
+			for (Future<?> put : puts) {
+				put.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (int i = 0; i < 80000; i++) {
+			assertTrue(filter.mightContain("value" + i), "Lost value" + i);
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.example.real_time_chat_app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.example.real_time_chat_app.exception.PasswordHashingBusyException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BoundedBCryptPasswordEncoderTest {
+
+	@Test
+	void hashesWithOtherWorkFactorsNeedAnUpgrade() {
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(5, 1, 2,
+				new SimpleMeterRegistry())) {
+			assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+			assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+			assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+			assertFalse(encoder.upgradeEncoding(""));
+		}
+	}
+
+	@Test
+	void saturatedEncoderRejectsHashing() throws Exception {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 1, meterRegistry)) {
+			BlockingPassword running = new BlockingPassword(release);
+			CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> encoder.encode(running));
+			assertTrue(running.started.await(5, TimeUnit.SECONDS));
+			CompletableFuture<String> queued = CompletableFuture
+					.supplyAsync(() -> encoder.encode(new BlockingPassword(release)));
+			awaitQueued(meterRegistry, 1);
+
+			assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("password"));
+			assertEquals(1, meterRegistry.counter("security.password.hash.rejected").count());
+
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			queued.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/** The queued hash waited for the running one, and its time includes that. */
+	@Test
+	void hashTimeIncludesTheWaitForAThread() throws Exception {
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (BoundedBCryptPasswordEncoder encoder = new BoundedBCryptPasswordEncoder(4, 1, 1, meterRegistry)) {
+			BlockingPassword running = new BlockingPassword(release);
+			CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> encoder.encode(running));
+			assertTrue(running.started.await(5, TimeUnit.SECONDS));
+			CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("password"));
+			awaitQueued(meterRegistry, 1);
+
+			Thread.sleep(200);
+			release.countDown();
+			first.get(5, TimeUnit.SECONDS);
+			queued.get(5, TimeUnit.SECONDS);
+		}
+
+		Timer timer = meterRegistry.get("security.password.hash").tag("operation", "encode").timer();
+		assertEquals(2, timer.count());
+		assertTrue(timer.max(TimeUnit.MILLISECONDS) >= 200);
+		assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 400);
+	}
+
+	private static void awaitQueued(MeterRegistry meterRegistry, int size) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (meterRegistry.get("security.password.hash.queue").gauge().value() < size) {
+			assertTrue(System.nanoTime() < deadline, "Hash was not queued");
+			Thread.sleep(5);
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.example.real_time_chat_app.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.real_time_chat_app.service.RoomMembershipCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class JwtChannelInterceptorTest {
+
+	private static final String EMAIL = "user@example.com";
+
+	@Mock
+	private JwtAuthenticationResolver jwtAuthenticationResolver;
+
+	@Mock
+	private RoomMembershipCache roomMembershipCache;
+
+	@Mock
+	private MessageChannel channel;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private JwtChannelInterceptor jwtChannelInterceptor;
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.invokeMethod(jwtChannelInterceptor, "init");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "/topic/room/room1", "/topic/room/room1/users", "/topic/room/room1/users/all" })
+	void allowsMembersToSubscribeToTheirRoom(String destination) {
+		when(roomMembershipCache.isMember(EMAIL, "room1")).thenReturn(true);
+
+		Message<?> message = subscribe(destination);
+
+		assertSame(message, jwtChannelInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void deniesSubscriptionsToRoomsTheUserIsNotIn() {
+		when(roomMembershipCache.isMember(EMAIL, "room2")).thenReturn(false);
+
+		assertThrows(AccessDeniedException.class,
+				() -> jwtChannelInterceptor.preSend(subscribe("/topic/room/room2"), channel));
+		assertEquals(1, meterRegistry.counter("chat.subscribe.denied").count());
+	}
+
+	/**
+	 * The broker matches subscriptions as patterns, so these would receive the
+	 * messages of other rooms or the queues of other users.
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = { "/topic/**", "/topic/room/*", "/topic/room/**", "/topic/*/room1",
+			"/topic/room/{roomId}", "/topic/room/room?", "/queue/**", "/user/queue/*" })
+	void deniesPatternSubscriptions(String destination) {
+		assertThrows(AccessDeniedException.class,
+				() -> jwtChannelInterceptor.preSend(subscribe(destination), channel));
+		verify(roomMembershipCache, never()).isMember(anyString(), anyString());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "/topic/rooms", "/topic/room/room1/other", "/queue/errors-user123", "/app/chat" })
+	void deniesUnknownDestinations(String destination) {
+		assertThrows(AccessDeniedException.class,
+				() -> jwtChannelInterceptor.preSend(subscribe(destination), channel));
+	}
+
+	@Test
+	void allowsTheUsersOwnQueues() {
+		Message<?> message = subscribe("/user/queue/rooms");
+
+		assertSame(message, jwtChannelInterceptor.preSend(message, channel));
+		verify(roomMembershipCache, never()).isMember(anyString(), anyString());
+	}
+
+	private static Message<?> subscribe(String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setDestination(destination);
+		accessor.setSubscriptionId("sub-0");
+		accessor.setUser(new UsernamePasswordAuthenticationToken(EMAIL, null, List.of()));
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+}
@@ -0,0 +1,326 @@
+package com.example.real_time_chat_app.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class PayloadEncodingInterceptorTest {
+
+	private static final String JSON = "{\"content\":\"" + "hello ".repeat(400) + "\"}";
+
+	@Mock
+	private MessageChannel channel;
+
+	@Spy
+	private CompressionMetrics compressionMetrics = new CompressionMetrics();
+
+	@InjectMocks
+	private PayloadEncodingInterceptor payloadEncodingInterceptor;
+
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final ObjectMapper jsonMapper = new ObjectMapper();
+
+	private final CBORMapper cborMapper = new CBORMapper();
+
+	@BeforeEach
+	void setup() {
+		ReflectionTestUtils.setField(compressionMetrics, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.invokeMethod(compressionMetrics, "init");
+		ReflectionTestUtils.setField(payloadEncodingInterceptor, "compressionLevel", 6);
+		ReflectionTestUtils.setField(payloadEncodingInterceptor, "compressionMinSize", 1024);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "application/cbor", "application/json, application/cbor", "application/cbor;q=0.5" })
+	void convertsJsonToCborForSessionsThatAcceptIt(String acceptContentType) throws Exception {
+		connect(openSession("s1"), "s1", acceptContentType, null);
+
+		Message<?> sent = payloadEncodingInterceptor.preSend(message("s1", JSON), channel);
+
+		assertEquals(PayloadEncodingInterceptor.APPLICATION_CBOR, StompHeaderAccessor.wrap(sent).getContentType());
+		assertEquals(jsonMapper.readTree(JSON), cborMapper.readTree((byte[]) sent.getPayload()));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "application/json", "text/plain", "application/cbor-seq" })
+	void sendsJsonToSessionsThatDoNotAcceptCbor(String acceptContentType) throws Exception {
+		connect(openSession("s1"), "s1", acceptContentType, null);
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void sendsJsonToSessionsWithoutAnAcceptContentType() throws Exception {
+		connect(openSession("s1"), "s1", null, null);
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void sendsJsonToSockJsSessions() throws Exception {
+		SockJsSession session = mock(SockJsSession.class);
+		connect(session, "s1", "application/cbor", "deflate");
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void leavesMessagesThatAreNotJson() throws Exception {
+		connect(openSession("s1"), "s1", "application/cbor", null);
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		accessor.setSessionId("s1");
+		accessor.setContentType(MimeTypeUtils.TEXT_PLAIN);
+		Message<?> message = MessageBuilder.createMessage("hello".getBytes(StandardCharsets.UTF_8),
+				accessor.getMessageHeaders());
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void forgetsSessionsThatDisconnect() throws Exception {
+		connect(openSession("s1"), "s1", "application/cbor", "deflate");
+		disconnect("s1");
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void convertsABroadcastOnce() throws Exception {
+		connect(openSession("s1"), "s1", "application/cbor", null);
+		connect(openSession("s2"), "s2", "application/cbor", null);
+		byte[] payload = JSON.getBytes(StandardCharsets.UTF_8);
+
+		Message<?> first = payloadEncodingInterceptor.preSend(message("s1", payload), channel);
+		Message<?> second = payloadEncodingInterceptor.preSend(message("s2", payload), channel);
+		// An equal payload of another broadcast is converted again
+		Message<?> next = payloadEncodingInterceptor.preSend(message("s1", JSON), channel);
+
+		assertSame(first.getPayload(), second.getPayload());
+		assertNotSame(first.getPayload(), next.getPayload());
+		assertArrayEquals((byte[]) first.getPayload(), (byte[]) next.getPayload());
+	}
+
+	/**
+	 * One broadcast goes to a CBOR session, a JSON session and a CBOR session that
+	 * also accepts deflate, and each gets the encoding it asked for.
+	 */
+	@Test
+	void encodesABroadcastForEachSession() throws Exception {
+		WebSocketSession cborSession = openSession("cbor");
+		WebSocketSession jsonSession = openSession("json");
+		WebSocketSession deflateSession = openSession("deflate");
+		WebSocketSession cbor = decoratedSession(connect(cborSession, "cbor", "application/cbor", null));
+		WebSocketSession json = decoratedSession(connect(jsonSession, "json", null, null));
+		connect(deflateSession, "deflate", "application/cbor", "deflate");
+		byte[] payload = JSON.getBytes(StandardCharsets.UTF_8);
+
+		Message<?> toCbor = payloadEncodingInterceptor.preSend(message("cbor", payload), channel);
+		Message<?> toJson = payloadEncodingInterceptor.preSend(message("json", payload), channel);
+		Message<?> toDeflate = payloadEncodingInterceptor.preSend(message("deflate", payload), channel);
+
+		assertEquals(jsonMapper.readTree(JSON), cborMapper.readTree((byte[]) toCbor.getPayload()));
+		assertSame(payload, toJson.getPayload());
+		assertEquals(MimeTypeUtils.APPLICATION_JSON, StompHeaderAccessor.wrap(toJson).getContentType());
+		assertArrayEquals((byte[]) toCbor.getPayload(), inflate((byte[]) toDeflate.getPayload()));
+
+		// Only the session that asked for CBOR gets a CBOR frame as binary
+		String cborFrame = "MESSAGE\ncontent-type:application/cbor\n\nx\0";
+		cbor.sendMessage(new TextMessage(cborFrame));
+		json.sendMessage(new TextMessage(cborFrame));
+		verify(cborSession).sendMessage(any(BinaryMessage.class));
+		verify(jsonSession).sendMessage(any(TextMessage.class));
+	}
+
+	@Test
+	void compressesLargeMessagesForSessionsThatAcceptDeflate() throws Exception {
+		connect(openSession("s1"), "s1", "gzip, deflate");
+
+		Message<?> sent = payloadEncodingInterceptor.preSend(message("s1", JSON), channel);
+
+		assertEquals("deflate", StompHeaderAccessor.wrap(sent).getFirstNativeHeader("content-encoding"));
+		assertArrayEquals(JSON.getBytes(StandardCharsets.UTF_8), inflate((byte[]) sent.getPayload()));
+		assertEquals(1, meterRegistry.get("websocket.compression.frames").tag("compressed", "true").counter().count());
+		assertEquals(1, meterRegistry.get("websocket.compression.time").timer().count());
+	}
+
+	@Test
+	void leavesMessagesBelowTheMinimumSize() throws Exception {
+		connect(openSession("s1"), "s1", "deflate");
+		Message<?> message = message("s1", "{\"content\":\"hi\"}");
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+		assertEquals(1, meterRegistry.get("websocket.compression.frames").tag("compressed", "false").counter().count());
+		assertEquals(0, meterRegistry.get("websocket.compression.time").timer().count());
+	}
+
+	@Test
+	void leavesMessagesForSessionsThatDidNotAskForDeflate() throws Exception {
+		connect(openSession("s1"), "s1", "gzip");
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void doesNotCompressSessionsUsingPermessageDeflate() throws Exception {
+		connect(openSession("s1", new WebSocketExtension("permessage-deflate")), "s1", "deflate");
+		Message<?> message = message("s1", JSON);
+
+		assertSame(message, payloadEncodingInterceptor.preSend(message, channel));
+	}
+
+	@Test
+	void compressesABroadcastOnce() throws Exception {
+		connect(openSession("s1"), "s1", "deflate");
+		connect(openSession("s2"), "s2", "deflate");
+		byte[] payload = JSON.getBytes(StandardCharsets.UTF_8);
+
+		Message<?> first = payloadEncodingInterceptor.preSend(message("s1", payload), channel);
+		Message<?> second = payloadEncodingInterceptor.preSend(message("s2", payload), channel);
+
+		assertSame(first.getPayload(), second.getPayload());
+		assertEquals(2, meterRegistry.get("websocket.compression.frames").tag("compressed", "true").counter().count());
+		assertEquals(1, meterRegistry.get("websocket.compression.time").timer().count());
+	}
+
+	@Test
+	void sendsCompressedFramesAsBinary() throws Exception {
+		WebSocketSession session = openSession("s1");
+		WebSocketHandler handler = connect(session, "s1", "deflate");
+		WebSocketSession decorated = decoratedSession(handler);
+
+		decorated.sendMessage(new TextMessage("MESSAGE\ncontent-encoding:deflate\n\nx\0"));
+		decorated.sendMessage(new TextMessage("MESSAGE\ncontent-type:application/json\n\n{}\0"));
+
+		ArgumentCaptor<WebSocketMessage<?>> sent = ArgumentCaptor.captor();
+		verify(session, times(2)).sendMessage(sent.capture());
+		assertInstanceOf(BinaryMessage.class, sent.getAllValues().get(0));
+		assertInstanceOf(TextMessage.class, sent.getAllValues().get(1));
+	}
+
+	private WebSocketSession openSession(String sessionId, WebSocketExtension... extensions) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		lenient().when(session.getId()).thenReturn(sessionId);
+		lenient().when(session.getExtensions()).thenReturn(List.of(extensions));
+		return session;
+	}
+
+	/**
+	 * Opens a session through the decorated handler and sends its CONNECT frame
+	 * with an accept-encoding header.
+	 *
+	 * @return the handler that the decorated handler delegates to
+	 */
+	private WebSocketHandler connect(WebSocketSession session, String sessionId, String acceptEncoding)
+			throws Exception {
+		return connect(session, sessionId, null, acceptEncoding);
+	}
+
+	/**
+	 * Opens a session through the decorated handler and sends its CONNECT frame.
+	 *
+	 * @return the handler that the decorated handler delegates to
+	 */
+	private WebSocketHandler connect(WebSocketSession session, String sessionId, String acceptContentType,
+			String acceptEncoding) throws Exception {
+		WebSocketHandler handler = mock(WebSocketHandler.class);
+		payloadEncodingInterceptor.decorate(handler).afterConnectionEstablished(session);
+
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		if (acceptContentType != null) {
+			accessor.setNativeHeader("accept-content-type", acceptContentType);
+		}
+		if (acceptEncoding != null) {
+			accessor.setNativeHeader("accept-encoding", acceptEncoding);
+		}
+		payloadEncodingInterceptor.getInboundInterceptor()
+				.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), channel);
+		return handler;
+	}
+
+	private void disconnect(String sessionId) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		payloadEncodingInterceptor.getInboundInterceptor()
+				.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), channel);
+	}
+
+	private static WebSocketSession decoratedSession(WebSocketHandler handler) throws Exception {
+		ArgumentCaptor<WebSocketSession> session = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(handler).afterConnectionEstablished(session.capture());
+		return session.getValue();
+	}
+
+	private static Message<byte[]> message(String sessionId, String json) {
+		return message(sessionId, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Message<byte[]> message(String sessionId, byte[] payload) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/topic/room/room1");
+		accessor.setSubscriptionId("sub-0");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+	}
+
+	private static byte[] inflate(byte[] payload) throws Exception {
+		Inflater inflater = new Inflater();
+		inflater.setInput(payload);
+		byte[] buffer = new byte[64 * 1024];
+		int length = inflater.inflate(buffer);
+		inflater.end();
+		return Arrays.copyOf(buffer, length);
+	}
+
+}
@@ -14,6 +14,7 @@ import CustomToast from "./CustomToast.js";
 import { WebSocketClientContext } from "../context/WebSocketClientContext.js";
 import ChangeRoomNameModal from "./ChangeRoomNameModal.js";
 import logger from "../services/logger.js";
+import { logout } from "../services/logout.js";
 
 const ChatDashboard = () => {
 
@@ -35,6 +36,10 @@ const ChatDashboard = () => {
         loggedBackIn } = useContext(WebSocketClientContext);
 
     const handleLogout = useCallback(async () => {
+        // Revokes the token on the server if it is still valid
+        if (getToken() && !checkIfTokenExpired()) {
+            await logout();
+        }
         localStorage.removeItem('token');
         navigate('/login');
         window.location.reload(false);
@@ -16,6 +16,7 @@ const MessageList = ({ roomId, locationState, deleteRoom, user, setUser, updateR
     const location = useLocation();
     const navigate = useNavigate();
     const subscriptionsMade = useRef(false);
+    const messagesRef = useRef([]);
 
     const { subscribeToRoom, subscribeToRoomParticipants,
         deletedRoom, setDeletedRoom, messages, setMessages,
@@ -28,8 +29,14 @@ const MessageList = ({ roomId, locationState, deleteRoom, user, setUser, updateR
         if (roomId && connected && token) {
             const getMessages = async () => {
                 try {
-                    const messages = await fetchMessages(roomId);
-                    setMessages(messages);
+                    const loadedMessages = messagesRef.current;
+                    const lastMessage = loadedMessages[loadedMessages.length - 1];
+
+                    //After a reconnect the missed messages are fetched with the other rooms' messages
+                    if (!lastMessage || lastMessage.roomId !== roomId) {
+                        const messages = await fetchMessages(roomId);
+                        setMessages(messages);
+                    }
                 } catch (error) {
                     logger.debug('Error fetching messages: ', error);
                 }
@@ -126,6 +133,7 @@ const MessageList = ({ roomId, locationState, deleteRoom, user, setUser, updateR
     };
 
     useEffect(() => {
+        messagesRef.current = messages;
         scrollToBottom();
     }, [messages])
 
@@ -4,6 +4,9 @@ import SockJS from "sockjs-client";
 import { getToken } from "../services/jwtUtils.js";
 import logger from "../services/logger.js";
 import { fetchIfUserHasRoom } from "../services/fetchIfUserHasRoom.js";
+import { resyncMessages } from "../services/resyncMessages.js";
+import { mergeMessages } from "../services/mergeMessages.js";
+import { fetchMessages } from "../services/fetchMessages.js";
 
 export const WebSocketClientContext = createContext();
 
@@ -22,18 +25,34 @@ export const WebSocketClientProvider = ({ children }) => {
     const subscriptions = useRef([]);
     const token = getToken();
     const [subscribeWithRoomId, setSubscribeWithRoomId] = useState(null);
+    const useSockJS = useRef(false);
+    const lastSequences = useRef({});
+    const userRoomsRef = useRef([]);
+    const messagesRef = useRef([]);
 
     useEffect(() => {
         if (getToken()) {
+            let hasConnected = false;
+
             const client = new Client({
                 Authorization: `Bearer ${token}`,
-                brokerURL: `ws://${process.env.REACT_APP_API_BASE_URL}/ws`,
                 connectHeaders: {
                     Authorization: `Bearer ${token}`
                 },
 
-                webSocketFactory: () => new SockJS(`${process.env.REACT_APP_API_BASE_URL}/ws?token=` + token),
+                //Uses a plain WebSocket and falls back to SockJS if it cannot connect
+                webSocketFactory: () => {
+                    if (!useSockJS.current && window.WebSocket) {
+                        const webSocketURL = process.env.REACT_APP_API_BASE_URL.replace(/^http/, 'ws');
+                        return new WebSocket(`${webSocketURL}/stomp?token=` + token);
+                    }
+                    return new SockJS(`${process.env.REACT_APP_API_BASE_URL}/ws?token=` + token);
+                },
                 onConnect: (frame) => {
+                    if (hasConnected) {
+                        resyncRooms();
+                    }
+                    hasConnected = true;
                     subscribeToRoomListChanges();
                     subscribeToRoomDeletion(client);
                     subscribeToUserProfileUpdate();
@@ -49,6 +68,12 @@ export const WebSocketClientProvider = ({ children }) => {
                 },
                 onWebSocketClose: () => {
                     logger.debug('WebSocket connection closed');
+                    setConnected(false);
+
+                    if (!hasConnected && !useSockJS.current) {
+                        logger.debug('Falling back to SockJS');
+                        useSockJS.current = true;
+                    }
                 }
             });
             client.activate();
@@ -62,10 +87,78 @@ export const WebSocketClientProvider = ({ children }) => {
         }
     }, [token]);
 
+    useEffect(() => {
+        userRoomsRef.current = userRooms;
+    }, [userRooms]);
+
+    useEffect(() => {
+        messagesRef.current = messages;
+    }, [messages]);
+
+    //Fetches the messages missed in every joined room in one request after a reconnect,
+    //then updates the open room's messages and the last message of each room in the list
+    const resyncRooms = async () => {
+        const loadedMessages = messagesRef.current;
+        const lastMessage = loadedMessages[loadedMessages.length - 1];
+        const cursors = {};
+
+        userRoomsRef.current.forEach(room => {
+            cursors[room.id] = room.lastMessageId
+                ? { lastMessageId: room.lastMessageId, lastSequence: room.lastMessageSequence }
+                : null;
+        });
+
+        //The open room's loaded messages are newer than its room list entry
+        if (lastMessage) {
+            cursors[lastMessage.roomId] = { lastMessageId: lastMessage.id, lastSequence: lastMessage.sequence };
+        }
+
+        if (Object.keys(cursors).length === 0) {
+            return;
+        }
+
+        try {
+            const rooms = await resyncMessages(cursors);
+            const newestMessages = {};
+
+            for (const resync of rooms) {
+                const missedMessages = resync.messages ?? [];
+
+                if (missedMessages.length > 0) {
+                    newestMessages[resync.roomId] = missedMessages[missedMessages.length - 1];
+                }
+
+                if (lastMessage && resync.roomId === lastMessage.roomId) {
+                    //Reloads the history if too many messages were missed
+                    const roomMessages = resync.hasMore ? await fetchMessages(resync.roomId) : missedMessages;
+
+                    setMessages(prevMessages => prevMessages[prevMessages.length - 1]?.roomId === resync.roomId
+                        ? (resync.hasMore ? roomMessages : mergeMessages(prevMessages, roomMessages))
+                        : prevMessages);
+                }
+            }
+
+            setRooms(prevRooms => prevRooms.map(room => {
+                const newestMessage = newestMessages[room.id];
+
+                return newestMessage ? {
+                    ...room,
+                    lastMessageId: newestMessage.id,
+                    lastMessageSequence: newestMessage.sequence,
+                    lastMessage: newestMessage.content,
+                    lastMessageSenderId: newestMessage.senderId,
+                    lastMessageSenderFirstName: newestMessage.senderFirstName
+                } : room;
+            }));
+        } catch (error) {
+            logger.debug('Error fetching missed messages: ', error);
+        }
+    };
+
     //For updating room last message sent and room name change
     const subscribeToRoomListChanges = () => {
         try {
-            const subscription = clientRef.current.subscribe(`/topic/rooms`, (message) => {
+            const subscription = clientRef.current.subscribe(`/user/queue/rooms`, (message) => {
 
                 const response = JSON.parse(message.body);
                 if (response) {
@@ -83,7 +176,7 @@ export const WebSocketClientProvider = ({ children }) => {
 
     const subscribeToRoomDeletion = () => {
         try {
-            const subscription = clientRef.current.subscribe(`/topic/room/delete`, (message) => {
+            const subscription = clientRef.current.subscribe(`/user/queue/room/delete`, (message) => {
                 const response = JSON.parse(message.body);
 
                 if (response.type === 'userRoomDelete') {
@@ -98,7 +191,7 @@ export const WebSocketClientProvider = ({ children }) => {
 
     const subscribeToUserProfileUpdate = () => {
         try {
-            const subscription = clientRef.current.subscribe(`/topic/user/update`, (message) => {
+            const subscription = clientRef.current.subscribe(`/user/queue/user/update`, (message) => {
                 const response = JSON.parse(message.body);
                 setUpdatedUserProfile(response);
             });
@@ -108,17 +201,40 @@ export const WebSocketClientProvider = ({ children }) => {
         }
     };
 
+    //Fetches the messages missed between the last sequence seen in a room and a newer message.
+    //Sequences have gaps where a save failed, so this may find nothing.
+    const fillSequenceGap = useCallback(async (roomId, lastSequence) => {
+        try {
+            const rooms = await resyncMessages({ [roomId]: { lastSequence: lastSequence } });
+            const missedMessages = rooms.find(room => room.roomId === roomId)?.messages ?? [];
+
+            setMessages(prevMessages => prevMessages[prevMessages.length - 1]?.roomId === roomId
+                ? mergeMessages(prevMessages, missedMessages) : prevMessages);
+        } catch (error) {
+            logger.debug('Error fetching missed messages: ', error);
+        }
+    }, []);
+
     const subscribeToRoom = useCallback((roomId) => {
         const subscription = clientRef.current.subscribe(`/topic/room/${roomId}`, (message) => {
             const response = JSON.parse(message.body);
 
             if (response.type === 'message') {
-                setMessages(prevMessages => [...prevMessages, response]);
+                setMessages(prevMessages => mergeMessages(prevMessages, [response]));
+
+                //A skipped sequence number may mean a message was missed
+                const lastSequence = lastSequences.current[roomId];
+                if (response.sequence != null) {
+                    if (lastSequence != null && response.sequence > lastSequence + 1) {
+                        fillSequenceGap(roomId, lastSequence);
+                    }
+                    lastSequences.current[roomId] = Math.max(lastSequence ?? 0, response.sequence);
+                }
             }
         });
 
         subscriptions.current.push({ type: 'room', roomId: roomId, subscription: subscription });
-    }, []);
+    }, [fillSequenceGap]);
 
     const subscribeToRoomParticipants = useCallback((roomId) => {
         const subscription = clientRef.current.subscribe(`/topic/room/${roomId}/users`, (message) => {
@@ -135,7 +251,7 @@ export const WebSocketClientProvider = ({ children }) => {
     }, []);
 
     const subscribeToErrorQueue = () => {
-        const subscription = clientRef.current.subscribe('/queue/errors', (message) => {
+        const subscription = clientRef.current.subscribe('/user/queue/errors', (message) => {
             logger.debug('Message validation error: ', message.body);
         });
         subscriptions.current.push({ type: 'errorQueue', subscription: subscription });
@@ -184,16 +300,6 @@ export const WebSocketClientProvider = ({ children }) => {
                 } catch (error) {
                     logger.debug('Publishing message, Send message error! ', error);
                 }
-
-                //Update room last message with new message
-                try {
-                    clientRef.current.publish({
-                        destination: `/app/updateRoomLastMessage/${roomId}`,
-                        body: JSON.stringify({ content: sendMessageContent, senderId: currentUserId, senderFirstName: currentUserFirstName })
-                    });
-                } catch (error) {
-                    logger.debug('Update room error! ', error);
-                }
             } else {
                 logger.debug('Stomp client is not initialized.');
             }
@@ -0,0 +1,10 @@
+import axiosInstance from "./axiosInstance.js";
+import logger from "../services/logger.js";
+
+export const logout = async () => {
+    try {
+        await axiosInstance.post('/api/users/logout');
+    } catch (error) {
+        logger.debug('Error logging out: ' + error);
+    }
+}
@@ -0,0 +1,28 @@
+//Adds messages that are not already in the list, placed by their room sequence.
+//A message without a sequence is either older than sequences or not saved yet,
+//so it keeps its place and new messages without one are added at the end.
+//A message already in the list gets the sequence it was saved with.
+export const mergeMessages = (messages, newMessages) => {
+    const merged = [...messages];
+
+    newMessages.forEach(message => {
+        const existingIndex = merged.findIndex(existing => existing.id === message.id);
+
+        if (existingIndex !== -1) {
+            if (merged[existingIndex].sequence == null && message.sequence != null) {
+                merged[existingIndex] = message;
+            }
+            return;
+        }
+
+        let index = merged.length;
+        if (message.sequence != null) {
+            while (index > 0 && merged[index - 1].sequence != null && merged[index - 1].sequence > message.sequence) {
+                index--;
+            }
+        }
+        merged.splice(index, 0, message);
+    });
+
+    return merged;
+};
@@ -0,0 +1,14 @@
+import axiosInstance from "./axiosInstance.js";
+import logger from "../services/logger.js";
+
+//Takes an object of room ids to the last message seen in each room,
+//as { lastMessageId, lastSequence }
+export const resyncMessages = async (cursors) => {
+    try {
+        const response = await axiosInstance.post('/api/messages/resync', cursors);
+        return response.data;
+    } catch (error) {
+        logger.debug('Error resyncing messages: ', error);
+        throw error;
+    }
+};